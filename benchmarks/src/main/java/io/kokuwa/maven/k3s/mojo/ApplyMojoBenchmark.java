@@ -0,0 +1,60 @@
+package io.kokuwa.maven.k3s.mojo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for pod filters of {@link ApplyMojo}, evaluated for every pod before waiting.
+ *
+ * @author stephan@schnabel.org
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ApplyMojoBenchmark {
+
+	@Param("1000")
+	public int pods;
+
+	private List<String[]> resources;
+
+	@Setup
+	public void setup() {
+		resources = new ArrayList<>(pods);
+		for (var i = 0; i < pods; i++) {
+			resources.add(switch (i % 4) {
+				case 0 -> new String[] { "default", "app-" + i + "-7d4b9c8f5d-x2k9p" };
+				case 1 -> new String[] { "default", "db-" + i };
+				case 2 -> new String[] { "kube-system", "helper-pod-create-pvc-" + i };
+				default -> new String[] { "default", "standalone-pod-name-" + i + "x" };
+			});
+		}
+	}
+
+	@Benchmark
+	public int isIgnoredPod() {
+		var ignored = 0;
+		for (var resource : resources) {
+			if (ApplyMojo.isIgnoredPod(resource[0], resource[1])) {
+				ignored++;
+			}
+		}
+		return ignored;
+	}
+}
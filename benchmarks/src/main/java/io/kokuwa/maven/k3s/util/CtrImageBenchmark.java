@@ -0,0 +1,64 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for parsing <code>ctr image list</code> and looking up images, done for every import of image mojo.
+ *
+ * @author stephan@schnabel.org
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CtrImageBenchmark {
+
+	@Param("5000")
+	public int rows;
+
+	private List<String> output;
+	private List<CtrImage> images;
+	private Image lastImage;
+
+	@Setup
+	public void setup() {
+		output = new ArrayList<>(rows + 1);
+		output.add("REF TYPE DIGEST SIZE PLATFORMS LABELS");
+		for (var i = 0; i < rows; i++) {
+			var digest = "sha256:" + String.format("%064x", i);
+			output.add("docker.io/library/app-" + i + ":1.0." + i % 10
+					+ " application/vnd.oci.image.index.v1+json " + digest + " " + (i % 500) + ".3 MiB"
+					+ " linux/amd64,linux/arm64"
+					+ " io.cri-containerd.image=managed,k3s-maven-plugin=true,k3s-maven-digest=" + digest);
+		}
+		images = Docker.parseCtrImages(output);
+		lastImage = Image.of("docker.io/library/app-" + (rows - 1) + ":1.0." + (rows - 1) % 10);
+	}
+
+	@Benchmark
+	public List<CtrImage> parse() {
+		return Docker.parseCtrImages(output);
+	}
+
+	@Benchmark
+	public Optional<CtrImage> findByName() {
+		return CtrImage.findByName(images, lastImage);
+	}
+}
@@ -0,0 +1,84 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+
+/**
+ * Benchmark for {@link DockerLogCallback} with a k3s log split into docker frames. Frames do not end at line breaks,
+ * like frames received from docker.
+ *
+ * @author stephan@schnabel.org
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class DockerLogCallbackBenchmark {
+
+	/** Size of generated log in bytes, default is 100 MiB. */
+	@Param("104857600")
+	public int size;
+
+	@Param("8192")
+	public int frameSize;
+
+	private List<Frame> frames;
+
+	@Setup
+	public void setup() {
+		var log = new StringBuilder(size + 256);
+		var line = 0;
+		while (log.length() < size) {
+			log.append("2026-10-18T10:00:00.").append(String.format("%09d", line % 1_000_000_000))
+					.append("Z stderr F I1018 10:00:00.000000      73 controller.go:").append(line % 1000)
+					.append("] \"Observed a panic\" reconciler=\"deployment\" object=\"default/app-")
+					.append(line % 100).append("\"\n");
+			line++;
+		}
+		var bytes = log.toString().getBytes(StandardCharsets.UTF_8);
+		frames = new ArrayList<>(bytes.length / frameSize + 1);
+		for (var offset = 0; offset < bytes.length; offset += frameSize) {
+			var payload = Arrays.copyOfRange(bytes, offset, Math.min(offset + frameSize, bytes.length));
+			frames.add(new Frame(StreamType.STDERR, payload));
+		}
+	}
+
+	/** Keep last lines, used for exec and log waits. */
+	@Benchmark
+	public int lines() {
+		var callback = new DockerLogCallback(200);
+		frames.forEach(callback::onNext);
+		callback.onComplete();
+		return callback.messages.size();
+	}
+
+	/** Write frames to stream, used for debug collection. */
+	@Benchmark
+	public int sink() {
+		var callback = new DockerLogCallback(OutputStream.nullOutputStream());
+		frames.forEach(callback::onNext);
+		callback.onComplete();
+		return frames.size();
+	}
+}
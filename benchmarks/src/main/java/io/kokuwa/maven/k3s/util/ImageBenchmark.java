@@ -0,0 +1,41 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link Image#of(String)}, called for every image of image mojo and every row of ctr output.
+ *
+ * @author stephan@schnabel.org
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ImageBenchmark {
+
+	@Param({
+		"postgres",
+		"postgres:16",
+		"docker.io/library/postgres:16",
+		"ghcr.io/kokuwaio/app:1.0.0",
+		"registry.example.org:5000/group/app:1.0.0@sha256:b44f8077f3cc983f21adf071c813599ff805af75196a456a326253c7b3357c48" })
+	public String image;
+
+	@Benchmark
+	public Image of() {
+		return Image.of(image);
+	}
+}
@@ -1,19 +1,22 @@
 package io.kokuwa.maven.k3s.mojo;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -25,7 +28,12 @@ import org.apache.maven.plugins.annotations.Parameter;
 
 import com.github.dockerjava.api.model.Container;
 import io.kokuwa.maven.k3s.util.Await;
+import io.kokuwa.maven.k3s.util.Docker;
 import io.kokuwa.maven.k3s.util.DockerExecResult;
+import io.kokuwa.maven.k3s.util.KubeApi;
+import io.kokuwa.maven.k3s.util.KubectlWatch;
+import io.kokuwa.maven.k3s.util.Manifest;
+import io.kokuwa.maven.k3s.util.Timings;
 
 /**
  * Mojo for kubectl apply.
@@ -36,6 +44,9 @@ import io.kokuwa.maven.k3s.util.DockerExecResult;
 @Mojo(name = "apply", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, requiresProject = false)
 public class ApplyMojo extends K3sDebugMojo {
 
+	private static final Pattern STATEFULSET_POD = Pattern.compile(".*-[0-9]+");
+	private static final Pattern DEPLOYMENT_POD = Pattern.compile(".*(-[a-z0-9]{8,10})?-[a-z0-9]{5}");
+
 	/**
 	 * Path where to find manifest files to apply. This files are copied to docker container.
 	 *
@@ -45,7 +56,7 @@ public class ApplyMojo extends K3sDebugMojo {
 	private Path manifests;
 
 	/**
-	 * Namespace for kubernetes manifests.
+	 * Namespace for kubernetes manifests. In shared mode defaults to a namespace named after the artifactId.
 	 *
 	 * @since 2.1.0
 	 */
@@ -76,6 +87,38 @@ public class ApplyMojo extends K3sDebugMojo {
 	@Parameter(property = "k3s.timeout", defaultValue = "300")
 	private Duration timeout;
 
+	/**
+	 * Path of kubeconfig written by run mojo. Used to query the kubernetes api directly, kubectl inside the container
+	 * is used if not present.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.kubeconfig", defaultValue = "${project.build.directory}/k3s.yaml")
+	private Path kubeconfig;
+
+	/**
+	 * Apply only objects changed since last apply to this container. Digests of applied objects are kept in the marker
+	 * directory, changed objects are applied with server side apply and custom resource definitions are applied before
+	 * all other objects.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.incremental", defaultValue = "false")
+	private boolean incremental;
+
+	/**
+	 * Copy only manifests changed since last copy to this container and delete manifests removed on host.
+	 * Fingerprints of copied files are kept in the marker directory.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.sync", defaultValue = "false")
+	private boolean sync;
+
+	/** Directory for changed objects of {@link #incremental} apply. */
+	@Parameter(defaultValue = "${project.build.directory}/k3s/apply", readonly = true)
+	private Path applyDirectory;
+
 	/**
 	 * Skip applying kubectl manifests.
 	 *
@@ -85,36 +128,74 @@ public class ApplyMojo extends K3sDebugMojo {
 	private boolean skipApply;
 
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 
 		if (isSkip(skipApply)) {
 			return;
 		}
 
+		forEachCluster(this::apply);
+	}
+
+	private void apply(Docker docker, int cluster) throws MojoExecutionException {
+
 		// verify container and copy manifests
 
-		var container = getDocker().getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
-		getDocker().copyToContainer(container, manifests, toLinuxPath(path));
+		var container = docker.getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
+		var api = getKubeApi(kubeconfig, cluster);
+		var namespace = getNamespace();
+		var path = isShared() ? this.path.resolve(namespace) : this.path;
+		if (sync) {
+			var index = getMarker().readCopyIndex();
+			docker.syncToContainer(container, manifests, toLinuxPath(path), index);
+			index.write();
+		} else {
+			docker.copyToContainer(container, manifests, toLinuxPath(path));
+		}
+
+		// in shared mode every module uses an own namespace
+
+		if (isShared()) {
+			if (docker.exec(container, "kubectl", "get", "namespace", namespace, "--ignore-not-found").isEmpty()) {
+				docker.exec(container, "kubectl", "create", "namespace", namespace);
+			}
+			getProject().getProperties().put("k3s.namespace", namespace);
+			log.info("Use namespace {} of shared k3s", namespace);
+		}
 
 		// wait for service account, see https://github.com/kubernetes/kubernetes/issues/66689
 
-		var command = new String[] { "kubectl", "get", "sa", "default", "--ignore-not-found", "--output=name" };
-		if (getDocker().exec(container, command).isEmpty()) {
+		var serviceAccountNamespace = namespace == null ? "default" : namespace;
+		if (!hasServiceAccount(docker, api, container, serviceAccountNamespace)) {
 			log.info("");
 			log.info("No service account found, waiting for sa ...");
-			Await.await(log, "k3s service account ready").until(() -> !getDocker().exec(container, command).isEmpty());
+			getTimings().time(Timings.WAIT, "serviceaccount " + serviceAccountNamespace + "/default", () -> {
+				Await.await(log, "k3s service account ready")
+						.until(() -> hasServiceAccount(docker, api, container, serviceAccountNamespace));
+				return null;
+			});
 			log.info("Service account found, continue ...");
 			log.info("");
 		}
 
 		// wait for node getting ready
 
-		getDocker().exec(container, "kubectl", "wait", "--for=condition=Ready", "node", "k3s");
+		if (api.isPresent()) {
+			getTimings().time(Timings.WAIT, "node k3s", () -> {
+				Await.await(log, "k3s node ready").timeout(Duration.ofSeconds(30))
+						.until(() -> api.get().isNodeReady("k3s"));
+				return null;
+			});
+		} else {
+			docker.exec(container, "kubectl", "wait", "--for=condition=Ready", "node", "k3s");
+		}
 
 		// check taints
 
-		var taints = getDocker().exec(container, "kubectl", "get", "nodes",
-				"-o=jsonpath={range .items[*]}{.spec.taints[?(@.effect==\"NoSchedule\")].key}{\"\\n\"}{end}");
+		var taints = api.isPresent()
+				? api.get().getNodeTaints("NoSchedule")
+				: docker.exec(container, "kubectl", "get", "nodes",
+						"-o=jsonpath={range .items[*]}{.spec.taints[?(@.effect==\"NoSchedule\")].key}{\"\\n\"}{end}");
 		if (!taints.isEmpty()) {
 			log.error("Found node taints with effect NoSchedule: {}", taints);
 			throw new MojoExecutionException("Node has taints " + taints + " with effect NoSchedule");
@@ -122,25 +203,29 @@ public class ApplyMojo extends K3sDebugMojo {
 
 		// execute command
 
-		var result = apply(container);
-		if (result.exitCode() != 0
-				&& result.messages().stream().anyMatch(l -> l.endsWith("CRDs are installed first"))) {
-			log.info("Found CRDs created, but kubectl failed. Try again ...");
-			result = apply(container);
+		if (incremental) {
+			applyIncremental(docker, container, namespace, path);
+		} else {
+			var result = apply(docker, container, namespace, path);
+			if (result.exitCode() != 0
+					&& result.messages().stream().anyMatch(l -> l.endsWith("CRDs are installed first"))) {
+				log.info("Found CRDs created, but kubectl failed. Try again ...");
+				result = apply(docker, container, namespace, path);
+			}
+			result.verify();
 		}
-		result.verify();
 
 		// wait for stuff to be ready
 
+		var watches = new ArrayList<KubectlWatch>();
 		try {
-			var success = true;
-			var pool = Executors.newWorkStealingPool();
-			var futures = waitFor(container).stream()
-					.collect(Collectors.toMap(Entry::getKey, e -> pool.submit(e.getValue())));
+			var futures = waitFor(docker, api, container, isShared() ? namespace : null, watches);
+			var all = CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new));
 			var missing = new AtomicReference<>(futures.keySet().stream().sorted().toList());
-			pool.submit(() -> {
-				while (!futures.values().stream().allMatch(Future::isDone)) {
-					Thread.sleep(15000);
+			while (!all.isDone()) {
+				try {
+					all.get(15, TimeUnit.SECONDS);
+				} catch (TimeoutException e) {
 					var newMissing = futures.entrySet().stream()
 							.filter(f -> !f.getValue().isDone())
 							.map(Entry::getKey).sorted().toList();
@@ -153,27 +238,65 @@ public class ApplyMojo extends K3sDebugMojo {
 						}
 					}
 				}
-				return null;
-			});
+			}
 
+			var success = true;
 			for (var future : futures.entrySet()) {
-				success &= future.getValue().get();
+				var ready = future.getValue().get();
+				if (!ready) {
+					var resource = future.getKey().split("/");
+					docker.exec(container, "kubectl", "get", "--output=yaml",
+							"--namespace=" + resource[1], resource[0], resource[2]);
+				}
+				success &= ready;
 			}
 			if (!success) {
-				handleDebugInfos(container);
+				handleDebugInfos(docker, container, cluster);
 				throw new MojoExecutionException("Failed to wait for resources, see previous log");
 			}
 		} catch (InterruptedException | ExecutionException e) {
 			throw new MojoExecutionException("Failed to wait for resources", e);
+		} finally {
+			for (var watch : watches) {
+				try {
+					watch.close();
+				} catch (IOException e) {
+					log.debug("Failed to close watch", e);
+				}
+			}
 		}
 	}
 
-	private DockerExecResult apply(Container container) throws MojoExecutionException {
+	/**
+	 * Pods that are not waited for: helper pods of local storage provider and pods managed by deployments or
+	 * statefulsets.
+	 *
+	 * @param namespace Namespace of pod.
+	 * @param name      Name of pod.
+	 * @return <code>true</code> if pod should be ignored
+	 */
+	static boolean isIgnoredPod(String namespace, String name) {
+		return "kube-system".equals(namespace) && name.startsWith("helper-pod-create-pvc-")
+				|| STATEFULSET_POD.matcher(name).matches()
+				|| DEPLOYMENT_POD.matcher(name).matches();
+	}
+
+	private boolean hasServiceAccount(Docker docker, Optional<KubeApi> api, Container container, String namespace)
+			throws MojoExecutionException {
+		return api.isPresent()
+				? api.get().hasServiceAccount(namespace, "default")
+				: !docker.exec(container, "kubectl", "get", "sa", "default", "--ignore-not-found",
+						"--output=name", "--namespace=" + namespace).isEmpty();
+	}
+
+	private String getNamespace() {
+		return namespace == null && isShared() ? getSharedNamespace() : namespace;
+	}
+
+	private DockerExecResult apply(Docker docker, Container container, String namespace, Path path)
+			throws MojoExecutionException {
 
 		var subPath = toLinuxPath(subdir == null ? path : path.resolve(subdir));
-		var kustomizePath = subdir == null ? manifests : manifests.resolve(subdir);
-		var kustomize = Files.isRegularFile(kustomizePath.resolve("kustomization.yml"))
-				|| Files.isRegularFile(kustomizePath.resolve("kustomization.yaml"));
 
 		var command = new ArrayList<String>();
 		command.add("kubectl");
@@ -181,7 +304,7 @@ public class ApplyMojo extends K3sDebugMojo {
 		if (namespace != null) {
 			command.add("--namespace=" + namespace);
 		}
-		if (kustomize) {
+		if (isKustomize()) {
 			command.add("--kustomize=" + subPath);
 		} else {
 			command.add("--filename=" + subPath);
@@ -189,67 +312,152 @@ public class ApplyMojo extends K3sDebugMojo {
 		}
 
 		log.info(command.stream().collect(Collectors.joining(" ")));
-		return getDocker().execWithoutVerify(container, timeout, command.toArray(new String[command.size()]));
+		return docker.execWithoutVerify(container, timeout, command.toArray(new String[command.size()]));
 	}
 
-	private Set<Entry<String, Callable<Boolean>>> waitFor(Container container) throws MojoExecutionException {
-		var calls = new HashSet<Entry<String, Callable<Boolean>>>();
+	/**
+	 * Apply objects changed since last apply with server side apply. Custom resource definitions are applied and
+	 * awaited first, so custom resources can be applied without retry.
+	 */
+	private void applyIncremental(Docker docker, Container container, String namespace, Path path)
+			throws MojoExecutionException {
+
+		// detect changed objects
+
+		var containerDirectory = toLinuxPath(path.resolveSibling(path.getFileName() + "-applied"));
+		var manifests = readManifests(docker, container, namespace, path, applyDirectory, containerDirectory);
+		var index = getMarker().readApplyIndex();
+		var applied = docker.getAppliedDigests(container, index);
+		var digests = new LinkedHashMap<String, String>();
+		var changed = new ArrayList<Manifest>();
+		for (var manifest : manifests) {
+			var digest = manifest.digest(namespace);
+			digests.put(manifest.id(), digest);
+			if (!digest.equals(applied.get(manifest.id()))) {
+				log.debug("Object {} changed", manifest.id());
+				changed.add(manifest);
+			}
+		}
+		if (changed.isEmpty()) {
+			log.info("All {} objects unchanged, skip apply", manifests.size());
+			return;
+		}
+		log.info("Apply {} of {} objects", changed.size(), manifests.size());
+
+		// write changed objects, namespaces first
+
+		var crds = changed.stream().filter(Manifest::isCustomResourceDefinition).toList();
+		var objects = changed.stream().filter(manifest -> !manifest.isCustomResourceDefinition())
+				.sorted(Comparator.comparing(manifest -> !manifest.isNamespace())).toList();
+		try {
+			Files.createDirectories(applyDirectory);
+			Files.writeString(applyDirectory.resolve("crds.yaml"), join(crds));
+			Files.writeString(applyDirectory.resolve("objects.yaml"), join(objects));
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to write changed objects to " + applyDirectory, e);
+		}
+		docker.copyToContainer(container, applyDirectory, containerDirectory);
+
+		// apply crds, wait for crds and apply all other objects
+
+		if (!crds.isEmpty()) {
+			serverSideApply(docker, container, namespace, containerDirectory + "/crds.yaml");
+			docker.exec(container, timeout, "kubectl", "wait", "--for=condition=Established",
+					"--timeout=" + timeout.toSeconds() + "s", "--filename=" + containerDirectory + "/crds.yaml");
+		}
+		if (!objects.isEmpty()) {
+			serverSideApply(docker, container, namespace, containerDirectory + "/objects.yaml");
+		}
+
+		docker.putAppliedDigests(container, index, digests);
+		index.write();
+	}
+
+	private List<Manifest> readManifests(Docker docker, Container container, String namespace, Path path,
+			Path directory, String containerDirectory) throws MojoExecutionException {
+		if (!isKustomize()) {
+			return Manifest.read(subdir == null ? manifests : manifests.resolve(subdir), namespace);
+		}
+		var subPath = toLinuxPath(subdir == null ? path : path.resolve(subdir));
+		docker.exec(container, "sh", "-c", "mkdir -p '" + containerDirectory + "' && "
+				+ "kubectl kustomize '" + subPath + "' > '" + containerDirectory + "/kustomize.yaml'");
+		docker.copyFromContainer(container, containerDirectory + "/kustomize.yaml", directory);
+		try {
+			return Manifest.parse(Files.readString(directory.resolve("kustomize.yaml")), namespace);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to read kustomize output", e);
+		}
+	}
+
+	private void serverSideApply(Docker docker, Container container, String namespace, String file)
+			throws MojoExecutionException {
+		var command = new ArrayList<String>();
+		command.add("kubectl");
+		command.add("apply");
+		command.add("--server-side");
+		command.add("--force-conflicts");
+		if (namespace != null) {
+			command.add("--namespace=" + namespace);
+		}
+		command.add("--filename=" + file);
+		log.info(command.stream().collect(Collectors.joining(" ")));
+		docker.exec(container, timeout, command.toArray(new String[command.size()]));
+	}
+
+	private boolean isKustomize() {
+		var kustomizePath = subdir == null ? manifests : manifests.resolve(subdir);
+		return Files.isRegularFile(kustomizePath.resolve("kustomization.yml"))
+				|| Files.isRegularFile(kustomizePath.resolve("kustomization.yaml"));
+	}
+
+	private static String join(List<Manifest> manifests) {
+		return manifests.stream().map(Manifest::content).collect(Collectors.joining("---\n"));
+	}
+
+	private Map<String, CompletableFuture<Boolean>> waitFor(Docker docker, Optional<KubeApi> api, Container container,
+			String scope, List<KubectlWatch> watches) throws MojoExecutionException {
+		var futures = new HashMap<String, CompletableFuture<Boolean>>();
 		for (var kind : List.of("statefulset", "deployment", "job", "pod")) {
 
 			// get resources to wait for
 
-			var resources = getDocker()
-					.exec(container, "kubectl", "get", kind,
-							"--all-namespaces",
-							"--no-headers",
-							"--output=custom-columns=:.metadata.namespace,:.metadata.name"
-									+ ("statefulset".equals(kind) ? ",:.spec.updateStrategy.type" : ""))
-					.stream().map(resource -> resource.split("\\s+")).collect(Collectors.toSet());
+			var resources = new ArrayList<>(api.isPresent()
+					? api.get().list(kind, scope)
+					: docker
+							.exec(container, "kubectl", "get", kind,
+									scope == null ? "--all-namespaces" : "--namespace=" + scope,
+									"--no-headers",
+									"--output=custom-columns=:.metadata.namespace,:.metadata.name")
+							.stream().map(resource -> resource.split("\\s+")).toList());
 			if ("pod".equals(kind)) {
-				// remove pods from local storage provider
-				resources.removeIf(r -> "kube-system".equals(r[0]) && r[1].startsWith("helper-pod-create-pvc-"));
-				// remove managed pods from deployments/statefulsets
-				resources.removeIf(r -> Pattern.matches(".*-[0-9]+", r[1]));
-				resources.removeIf(r -> Pattern.matches(".*(-[a-z0-9]{8,10})?-[a-z0-9]{5}", r[1]));
+				resources.removeIf(r -> isIgnoredPod(r[0], r[1]));
 			}
+			if (resources.isEmpty()) {
+				continue;
+			}
+
+			// use one watch for all resources of this kind
 
+			var watch = new KubectlWatch(kind, scope, timeout);
 			for (var resource : resources) {
 				var namespace = resource[0];
 				var name = resource[1];
 				var representation = "default".equals(namespace) ? name : namespace + "/" + name;
-
-				var tmp = new ArrayList<String>();
-				if ("pod".equals(kind)) {
-					tmp.addAll(List.of("kubectl", "wait", "--for=condition=ready"));
-				} else if ("job".equals(kind)) {
-					tmp.addAll(List.of("kubectl", "wait", "--for=condition=complete"));
-				} else if ("statefulset".equals(kind) && "OnDelete".equals(resource[2])) {
-					var replicas = getDocker().exec(container, "kubectl", "get", kind, name,
-							"--output=jsonpath={.status.replicas}", "--namespace=" + namespace).get(0);
-					tmp.addAll(List.of("kubectl", "wait", "--for=jsonpath={..status.readyReplicas}=" + replicas));
-				} else {
-					tmp.addAll(List.of("kubectl", "rollout", "status"));
-				}
-				tmp.add(kind);
-				tmp.add(name);
-				tmp.add("--namespace=" + namespace);
-				tmp.add("--timeout=" + timeout.getSeconds() + "s");
-
-				calls.add(Map.entry(representation, (Callable<Boolean>) () -> {
-					try {
-						log.debug("{} {} ... waiting", kind, representation);
-						getDocker().exec(container, timeout.plusSeconds(10), tmp.toArray(new String[tmp.size()]));
+				log.debug("{} {} ... waiting", kind, representation);
+				var timer = getTimings().start(Timings.WAIT, kind + " " + namespace + "/" + name);
+				futures.put(kind + "/" + namespace + "/" + name, watch.waitFor(namespace, name).thenApply(ready -> {
+					timer.stop(ready);
+					if (ready) {
 						log.info("{} {} ... ready", kind, representation);
-						return true;
-					} catch (MojoExecutionException e) {
-						getDocker().exec(container, "kubectl", "get", "--output=yaml", "--namespace=" + namespace, kind,
-								name);
-						return false;
+					} else {
+						log.error("{} {} ... failed", kind, representation);
 					}
+					return ready;
 				}));
 			}
+			watches.add(docker.execAsync(container, watch, watch.command()));
 		}
-		return calls;
+		return futures;
 	}
 
 	// setter
@@ -266,14 +474,30 @@ public class ApplyMojo extends K3sDebugMojo {
 		this.path = Path.of(path);
 	}
 
+	public void setApplyDirectory(File applyDirectory) {
+		this.applyDirectory = applyDirectory.toPath().toAbsolutePath();
+	}
+
 	public void setSubdir(String subdir) {
 		this.subdir = subdir == null ? null : Path.of(subdir);
 	}
 
+	public void setKubeconfig(File kubeconfig) {
+		this.kubeconfig = kubeconfig.toPath().toAbsolutePath();
+	}
+
 	public void setTimeout(int timeout) {
 		this.timeout = Duration.ofSeconds(timeout);
 	}
 
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public void setSync(boolean sync) {
+		this.sync = sync;
+	}
+
 	public void setSkipApply(boolean skipApply) {
 		this.skipApply = skipApply;
 	}
@@ -9,6 +9,8 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import io.kokuwa.maven.k3s.util.Docker;
+
 /**
  * Mojo for copying files to docker container.
  *
@@ -34,6 +36,15 @@ public class CopyMojo extends K3sMojo {
 	@Parameter(property = "k3s.copyTarget")
 	private Path copyTarget;
 
+	/**
+	 * Copy only files changed since last copy to this container and delete files removed on host. Fingerprints of
+	 * copied files are kept in the marker directory.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.sync", defaultValue = "false")
+	private boolean sync;
+
 	/**
 	 * Skip copying files.
 	 *
@@ -43,7 +54,7 @@ public class CopyMojo extends K3sMojo {
 	private boolean skipCopy;
 
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 
 		if (isSkip(skipCopy)) {
 			return;
@@ -52,8 +63,18 @@ public class CopyMojo extends K3sMojo {
 		if (!Files.exists(copySource)) {
 			throw new MojoExecutionException("Path " + copySource + " not found.");
 		}
-		var container = getDocker().getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
-		getDocker().copyToContainer(container, copySource, toLinuxPath(copyTarget));
+		forEachCluster(this::copy);
+	}
+
+	private void copy(Docker docker, int cluster) throws MojoExecutionException {
+		var container = docker.getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
+		if (sync) {
+			var index = getMarker().readCopyIndex();
+			docker.syncToContainer(container, copySource, toLinuxPath(copyTarget), index);
+			index.write();
+		} else {
+			docker.copyToContainer(container, copySource, toLinuxPath(copyTarget));
+		}
 	}
 
 	// setter
@@ -66,6 +87,10 @@ public class CopyMojo extends K3sMojo {
 		this.copyTarget = copyTarget == null ? null : copyTarget.toPath();
 	}
 
+	public void setSync(boolean sync) {
+		this.sync = sync;
+	}
+
 	public void setSkipCopy(boolean skipCopy) {
 		this.skipCopy = skipCopy;
 	}
@@ -23,14 +23,14 @@ public class DebugMojo extends K3sDebugMojo {
 	private boolean skipDebug;
 
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 
 		if (isSkip(skipDebug)) {
 			return;
 		}
 
-		var container = getDocker().getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
-		handleDebugInfos(container);
+		forEachCluster((docker, cluster) -> handleDebugInfos(docker,
+				docker.getContainer().orElseThrow(() -> new MojoExecutionException("No container found")), cluster));
 	}
 
 	// setter
@@ -10,7 +10,6 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.project.MavenProject;
 
 import com.github.dockerjava.api.model.HostConfig;
 import com.github.dockerjava.api.model.WaitContainerCondition;
@@ -29,9 +28,6 @@ public class HostnameMojo extends K3sImageMojo {
 
 	private Map<String, String> env = System.getenv();
 
-	@Parameter(defaultValue = "${project}", readonly = true)
-	private MavenProject project;
-
 	/**
 	 * Command to determine hostname.
 	 *
@@ -58,7 +54,7 @@ public class HostnameMojo extends K3sImageMojo {
 
 	@SuppressWarnings("resource")
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 		if (isSkip(skipHostname)) {
 			return;
 		}
@@ -83,7 +79,7 @@ public class HostnameMojo extends K3sImageMojo {
 				log.debug("Could not extract host from {}={}", DefaultDockerClientConfig.DOCKER_HOST, dockerHostEnv);
 			} else {
 				log.info("Use host {} from {}={}", hostname, DefaultDockerClientConfig.DOCKER_HOST, dockerHostEnv);
-				project.getProperties().put(hostnameProperty, hostname);
+				getProject().getProperties().put(hostnameProperty, hostname);
 				return;
 			}
 		}
@@ -110,7 +106,7 @@ public class HostnameMojo extends K3sImageMojo {
 						.withStdErr(true)
 						.withFollowStream(true)
 						.exec(new DockerLogCallback());
-				Await.await(log, containerId).until(() -> callback.isCompleted());
+				Await.await(log, containerId).until(callback.getCompletion());
 
 				if (callback.messages.isEmpty()) {
 					throw new MojoExecutionException("Failed to determine hostname, docker approach returned nothing.");
@@ -119,7 +115,7 @@ public class HostnameMojo extends K3sImageMojo {
 				}
 
 				log.info("Use host {} from docker approach", callback.messages.get(0));
-				project.getProperties().put(hostnameProperty, callback.messages.get(0));
+				getProject().getProperties().put(hostnameProperty, callback.messages.get(0));
 				return;
 
 			} catch (InterruptedException e) {
@@ -134,10 +130,6 @@ public class HostnameMojo extends K3sImageMojo {
 
 	// setter
 
-	public void setProject(MavenProject project) {
-		this.project = project;
-	}
-
 	public void setHostnameProperty(String hostnameProperty) {
 		this.hostnameProperty = hostnameProperty;
 	}
@@ -1,20 +1,17 @@
 package io.kokuwa.maven.k3s.mojo;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.zip.Adler32;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -23,7 +20,11 @@ import org.apache.maven.plugins.annotations.Parameter;
 
 import com.github.dockerjava.api.model.Container;
 import io.kokuwa.maven.k3s.util.CtrImage;
+import io.kokuwa.maven.k3s.util.Docker;
 import io.kokuwa.maven.k3s.util.Image;
+import io.kokuwa.maven.k3s.util.ImageIndex;
+import io.kokuwa.maven.k3s.util.PullManager;
+import io.kokuwa.maven.k3s.util.Timings;
 
 /**
  * Import images into k3s containerd.
@@ -34,6 +35,12 @@ import io.kokuwa.maven.k3s.util.Image;
 @Mojo(name = "image", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, requiresProject = false)
 public class ImageMojo extends K3sMojo {
 
+	/** Prefix of lines with exit code of one import in batch output. */
+	private static final String RESULT = "k3s-maven-result";
+
+	/** Prefix of lines with imported ref of one import in batch output. */
+	private static final String REF = "k3s-maven-ref";
+
 	/**
 	 * Download given images via "ctr image pull" inside k3s container.
 	 *
@@ -66,6 +73,15 @@ public class ImageMojo extends K3sMojo {
 	@Parameter(property = "k3s.dockerPullAlways", defaultValue = "false")
 	private boolean dockerPullAlways;
 
+	/**
+	 * Copy only blobs of docker images that are missing in containerd. Works with the OCI layout of
+	 * <code>docker save</code> (docker 25+), images in legacy format are always copied completely.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.dockerLayerDedup", defaultValue = "false")
+	private boolean dockerLayerDedup;
+
 	/**
 	 * Timout for "ctr image pull" or "docker pull" in seconds.
 	 *
@@ -74,6 +90,14 @@ public class ImageMojo extends K3sMojo {
 	@Parameter(property = "k3s.pullTimeout", defaultValue = "1200")
 	private Duration pullTimeout;
 
+	/**
+	 * Maximum number of concurrent docker pulls per registry. Requests of the same image share one pull.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.pullsPerRegistry", defaultValue = "2")
+	private int pullsPerRegistry;
+
 	/**
 	 * Skip starting of k3s container.
 	 *
@@ -83,41 +107,129 @@ public class ImageMojo extends K3sMojo {
 	private boolean skipImage;
 
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 		// skip if no image is request
 
 		if (isSkip(skipImage) || ctrImages.isEmpty() && tarFiles.isEmpty() && dockerImages.isEmpty()) {
 			return;
 		}
 
-		// get callables that handle images
+		forEachCluster(this::importImages);
+	}
 
-		var container = getDocker().getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
-		var existingImages = getDocker().getCtrImages(container);
-		var tasks = new HashSet<Callable<Boolean>>();
-		dockerImages.forEach(requestedImage -> tasks.add(() -> docker(container, existingImages, requestedImage)));
-		tarFiles.forEach(tarFile -> tasks.add(() -> tar(container, existingImages, tarFile)));
-		ctrImages.forEach(requestedImage -> tasks.add(() -> ctr(container, existingImages, requestedImage)));
+	private void importImages(Docker docker, int cluster) throws MojoExecutionException {
+
+		// get callables that prepare images, imports are collected and executed afterwards
+
+		var container = docker.getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
+		var index = readImageIndex();
+		if (!dockerImages.isEmpty()) {
+			docker.validateImageIndex(index);
+		}
+		var existingImages = docker.getCtrImages(container, index);
+		var existingBlobs = dockerLayerDedup && !dockerImages.isEmpty()
+				? docker.getCtrContent(container)
+				: Set.<String>of();
+		var pulls = new PullManager(docker, pullsPerRegistry);
+		var tasks = new HashSet<Callable<Optional<Import>>>();
+		var timings = getTimings();
+		dockerImages.forEach(requestedImage -> tasks.add(() -> timings.time(Timings.IMAGE, requestedImage.toString(),
+				() -> docker(docker, container, index, existingImages, existingBlobs, pulls, requestedImage))));
+		tarFiles.forEach(tarFile -> tasks.add(() -> timings.time(Timings.IMAGE, tarFile.toString(),
+				() -> tar(docker, container, existingImages, tarFile))));
+		ctrImages.forEach(requestedImage -> tasks.add(() -> timings.time(Timings.IMAGE, requestedImage.toString(),
+				() -> ctr(docker, container, index, existingImages, requestedImage))));
 
 		// execute callables
 
-		try {
-			var success = true;
-			for (var future : Executors.newWorkStealingPool().invokeAll(tasks)) {
-				success &= future.get();
-			}
-			if (!success) {
-				throw new MojoExecutionException("Failed to handle images, see previous log");
+		var success = true;
+		var imports = new ArrayList<Import>();
+		try (var scheduler = newScheduler()) {
+			for (var future : scheduler.invokeAllIo(tasks)) {
+				try {
+					future.get().ifPresent(imports::add);
+				} catch (ExecutionException e) {
+					if (!(e.getCause() instanceof MojoExecutionException)) {
+						log.error("Failed to handle image", e.getCause());
+					}
+					success = false;
+				}
 			}
-		} catch (InterruptedException | ExecutionException e) {
+		} catch (InterruptedException e) {
 			throw new MojoExecutionException("Failed to handle images", e);
 		}
+		pulls.summary().forEach(line -> log.info("Pulled from {}", line));
+
+		// import all images with one exec, index of ctr images is refreshed afterwards
+
+		if (!imports.isEmpty()) {
+			success &= importAll(docker, container, imports);
+			docker.invalidateCtrImages(index);
+			if (success) {
+				docker.getCtrImages(container, index);
+			}
+		}
+		index.write();
+		if (!success) {
+			throw new MojoExecutionException("Failed to handle images, see previous log");
+		}
 	}
 
-	private boolean tar(Container container, List<CtrImage> existingImages, Path tarFile) {
+	/**
+	 * Import and label all prepared images with one shell script. Every import runs in an own subshell and reports
+	 * its exit code and imported refs, so a failing import does not abort the other ones.
+	 */
+	private boolean importAll(Docker docker, Container container, List<Import> imports)
+			throws MojoExecutionException {
+
+		var script = new StringBuilder();
+		for (var i = 0; i < imports.size(); i++) {
+			script.append("(").append(imports.get(i).script().replace("$INDEX", String.valueOf(i))).append(")\n")
+					.append("echo \"").append(RESULT).append(" ").append(i).append(" $?\"\n");
+		}
+		var result = docker.execWithoutVerify(container, pullTimeout, "sh", "-c", script.toString());
+
+		// collect results per import
+
+		var exitCodes = new HashMap<Integer, Integer>();
+		var refs = new HashMap<Integer, List<String>>();
+		for (var line : result.messages()) {
+			var parts = line.split(" ");
+			if (parts.length == 3 && RESULT.equals(parts[0])) {
+				exitCodes.put(Integer.valueOf(parts[1]), Integer.valueOf(parts[2]));
+			} else if (parts.length == 3 && REF.equals(parts[0])) {
+				refs.computeIfAbsent(Integer.valueOf(parts[1]), k -> new ArrayList<>()).add(parts[2]);
+			}
+		}
+
+		var success = true;
+		for (var i = 0; i < imports.size(); i++) {
+			var source = imports.get(i).source();
+			var exitCode = exitCodes.get(i);
+			if (exitCode == null || exitCode != 0) {
+				log.error("Failed to import {} with exit code {}", source, exitCode);
+				success = false;
+			} else if (source instanceof Image) {
+				log.info("Image {} copied from docker deamon", source);
+			} else if (refs.containsKey(i)) {
+				log.info("Imported tar from {} as {}", source, String.join(", ", refs.get(i)));
+			} else {
+				log.warn("Tar {} failed to determine image ref after import, checksum not stored.", source);
+				log.warn("Tar {} this is NOT a problem, but tar file will be imported every invocation", source);
+			}
+		}
+		if (!success) {
+			result.messages().stream().filter(line -> !line.startsWith(RESULT) && !line.startsWith(REF))
+					.forEach(line -> log.error("<<< {}", line));
+		}
+		return success;
+	}
+
+	private Optional<Import> tar(Docker docker, Container container, List<CtrImage> existingImages, Path tarFile)
+			throws MojoExecutionException {
 		if (!Files.isRegularFile(tarFile)) {
 			log.error("Tar not found: {}", tarFile);
-			return false;
+			throw new MojoExecutionException("Tar not found: " + tarFile);
 		}
 
 		try {
@@ -126,9 +238,7 @@ public class ImageMojo extends K3sMojo {
 
 			var labelPath = "k3s-maven-tar-path";
 			var labelChecksum = "k3s-maven-tar-checksum";
-			var checksum = new Adler32();
-			checksum.update(Files.readAllBytes(tarFile));
-			var newChecksum = "adler32:" + checksum.getValue();
+			var newChecksum = getMarker().checksum(tarFile);
 			var oldChecksum = existingImages.stream().map(CtrImage::labels)
 					.filter(l -> Optional.ofNullable(l.get(labelPath)).map(tarFile.toString()::equals).orElse(false))
 					.map(l -> l.get(labelChecksum)).filter(Objects::nonNull)
@@ -137,73 +247,54 @@ public class ImageMojo extends K3sMojo {
 				log.debug("Tar {} does not exists in ctr.", tarFile);
 			} else if (oldChecksum.equals(newChecksum)) {
 				log.info("Tar {} present in ctr with checksum {}, skip.", tarFile, newChecksum);
-				return true;
+				return Optional.empty();
 			} else {
 				log.debug("Tar {} present in ctr with checksum {}, new is: {}", tarFile, oldChecksum, newChecksum);
 			}
 
-			// import tar into ctr
+			// copy tar into container, refs are taken from import output and labeled to avoid reimporting tar
 
 			var destination = "/tmp/" + tarFile.hashCode();
-			getDocker().copyToContainer(container, tarFile, destination);
-			var ctrImportOutput = getDocker().exec(container, "ctr", "image", "import",
-					destination + "/" + tarFile.getFileName());
-
-			// try to store checksum to avoid reimporting tar
-
-			var outputPattern = Pattern.compile(".*(?<digest>sha256:[0-9a-f]{64}).*");
-			var digest = ctrImportOutput.stream()
-					.map(o -> outputPattern.matcher(o))
-					.filter(m -> m.matches())
-					.map(m -> m.group("digest")).findFirst().orElse(null);
-			if (digest == null) {
-				log.warn("Tar {} failed to determine image digest after import, checksum not stored.", tarFile);
-				log.warn("Tar {} output was: \n{}", tarFile,
-						ctrImportOutput.stream().collect(Collectors.joining("\n")));
-				log.warn("Tar {} this is NOT a problem, but tar file will be imported every invocation", tarFile);
-			} else {
-				log.debug("Tar {} has digest {}", tarFile, digest);
-				var images = getDocker().getCtrImages(container);
-				var ref = CtrImage.findByDigest(images, digest).map(CtrImage::ref).orElse(null);
-				if (ref == null) {
-					log.warn("Tar {} has digest {} but no ref was found", tarFile, digest);
-					log.warn("Tar {} this is NOT a problem, but tar file will be imported every invocation", tarFile);
-				} else {
-					getDocker().exec(container, "ctr", "image", "label", ref, labelPath + "=" + tarFile.toString());
-					getDocker().exec(container, "ctr", "image", "label", ref, labelChecksum + "=" + newChecksum);
-					log.debug("Tar {} labels stored", tarFile);
-					log.info("Imported tar from {} as {}", tarFile, ref);
-				}
-			}
+			docker.copyToContainer(container, tarFile, destination);
+			return Optional.of(new Import(tarFile, "set -o pipefail; "
+					+ "refs=$(ctr image import " + quote(destination + "/" + tarFile.getFileName())
+					+ " | sed -n 's/^unpacking \\([^ ]*\\) (sha256:.*/\\1/p'); "
+					+ "result=$?; rm -rf " + destination + "; [ $result -eq 0 ] || exit $result; "
+					+ "for ref in $refs; do "
+					+ "ctr image label \"$ref\" " + quote(labelPath + "=" + tarFile) + " "
+					+ quote(labelChecksum + "=" + newChecksum) + " > /dev/null || exit 1; "
+					+ "echo \"" + REF + " $INDEX $ref\"; "
+					+ "done"));
 
-		} catch (MojoExecutionException | IOException e) {
+		} catch (MojoExecutionException e) {
 			log.error("Failed to import tar: {}", tarFile, e);
-			return false;
+			throw e;
 		}
-
-		return true;
 	}
 
-	private boolean ctr(Container container, List<CtrImage> existingImages, Image image)
-			throws MojoExecutionException {
+	private Optional<Import> ctr(Docker docker, Container container, ImageIndex index, List<CtrImage> existingImages,
+			Image image) throws MojoExecutionException {
 		if (CtrImage.findByName(existingImages, image).isPresent()) {
 			log.debug("Image {} found in ctr, skip pulling", image);
-			return true;
+			return Optional.empty();
 		}
 
 		log.info("Image {} not found, start pulling", image);
 		// use crictl instead of cri, because crictl honors custom registry.yaml
 		// see https://github.com/k3s-io/k3s/issues/5277
-		getDocker().exec(container, pullTimeout, "crictl", "pull", image.toString());
+		docker.invalidateCtrImages(index);
+		docker.exec(container, pullTimeout, "crictl", "pull", image.toString());
 		log.info("Image {} pulled", image);
 
-		return true;
+		return Optional.empty();
 	}
 
-	private boolean docker(Container container, List<CtrImage> existingImages, Image image) {
+	private Optional<Import> docker(Docker docker, Container container, ImageIndex index,
+			List<CtrImage> existingImages, Set<String> existingBlobs, PullManager pulls, Image image)
+			throws MojoExecutionException {
 		// pull image
 
-		var digest = getDocker().findImage(image).map(Image::digest).orElse(null);
+		var digest = docker.findImage(image, index).map(Image::digest).orElse(null);
 		if (dockerPullAlways || digest == null) {
 			if (digest != null) {
 				log.debug("Image {} found in docker, pull always ...", image);
@@ -211,12 +302,13 @@ public class ImageMojo extends K3sMojo {
 				log.debug("Image {} not found in docker, pulling ...", image);
 			}
 			try {
-				getDocker().pullImage(image, pullTimeout);
+				pulls.pull(image, pullTimeout);
 			} catch (MojoExecutionException e) {
 				log.error("Failed to pull docker image {}", image, e);
-				return false;
+				throw e;
 			}
-			digest = getDocker().findImage(image).map(Image::digest).orElse(null);
+			index.putDockerImage(image, Optional.empty());
+			digest = docker.findImage(image, index).map(Image::digest).orElse(null);
 			log.debug("Image {} pull in docker with digest {}", image, digest);
 		} else {
 			log.debug("Image {} found in docker with digest {}", image, digest);
@@ -234,30 +326,39 @@ public class ImageMojo extends K3sMojo {
 			log.debug("Image {} does not exists in ctr.", image);
 		} else if (List.of(digest).contains(oldDigest)) {
 			log.info("Image {} present in ctr with digest {}, skip.", image, digest);
-			return true;
+			return Optional.empty();
 		} else {
 			log.debug("Image {} present in ctr with digest {}, new digest is: {}", image, oldDigest, digest);
 		}
 
-		// move from docker to ctr
+		// move from docker to container, image is piped into ctr later without a temporary tar
 
-		var filename = Path.of(image.hashCode() + ".tar");
-		var source = Path.of(System.getProperty("java.io.tmpdir")).resolve(filename);
+		var destination = "/tmp/" + image.hashCode();
 		try {
-			getDocker().saveImage(image, source);
-			getDocker().copyToContainer(container, source, "/tmp/");
-			getDocker().exec(container, "ctr", "image", "import", "--digests", "--base-name=" + ref,
-					"/tmp/" + filename);
-			getDocker().exec(container, "ctr", "image", "label", image.toString(), label + "=" + digest);
+			docker.copyImageToContainer(container, image, destination, existingBlobs);
 		} catch (MojoExecutionException e) {
-			log.error("Failed to import tar {}", source, e);
-			return false;
+			log.error("Failed to import image {}", image, e);
+			throw e;
 		}
+		return Optional.of(new Import(image, "set -o pipefail; "
+				+ "cd " + destination + " && tar -cf - * | ctr image import --digests --base-name=" + ref + " - "
+				+ "&& ctr image label " + quote(image.toString()) + " " + label + "=" + digest + " > /dev/null; "
+				+ "result=$?; rm -rf " + destination + "; exit $result"));
+	}
 
-		log.info("Image {} copied from docker deamon", image);
-		return true;
+	private static String quote(String value) {
+		return "'" + value.replace("'", "'\\''") + "'";
 	}
 
+	/**
+	 * Import prepared inside the container. The script runs in a subshell, <code>$INDEX</code> is replaced with the
+	 * position of this import.
+	 *
+	 * @param source Image or tar file
+	 * @param script Script to import and label
+	 */
+	private record Import(Object source, String script) {}
+
 	// setter
 
 	public void setCtrImages(List<String> ctrImages) {
@@ -272,10 +373,18 @@ public class ImageMojo extends K3sMojo {
 		this.tarFiles = tarFiles.stream().map(Path::of).map(Path::toAbsolutePath).toList();
 	}
 
+	public void setDockerLayerDedup(boolean dockerLayerDedup) {
+		this.dockerLayerDedup = dockerLayerDedup;
+	}
+
 	public void setDockerPullAlways(boolean dockerPullAlways) {
 		this.dockerPullAlways = dockerPullAlways;
 	}
 
+	public void setPullsPerRegistry(int pullsPerRegistry) {
+		this.pullsPerRegistry = pullsPerRegistry;
+	}
+
 	public void setPullTimeout(int pullTimeout) {
 		this.pullTimeout = Duration.ofSeconds(pullTimeout);
 	}
@@ -1,19 +1,27 @@
 package io.kokuwa.maven.k3s.mojo;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.stream.Collectors;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import com.github.dockerjava.api.model.Container;
 import io.kokuwa.maven.k3s.util.Await;
+import io.kokuwa.maven.k3s.util.DebugBundle;
+import io.kokuwa.maven.k3s.util.Docker;
+import io.kokuwa.maven.k3s.util.Docker.FileConsumer;
 import io.kokuwa.maven.k3s.util.DockerLogCallback;
 
 /**
@@ -25,13 +33,21 @@ import io.kokuwa.maven.k3s.util.DockerLogCallback;
 public abstract class K3sDebugMojo extends K3sMojo {
 
 	/**
-	 * Write debug data to stdout?
+	 * Write debug data to stdout? Only the last {@link #debugStdoutLines} lines of every file are written.
 	 *
 	 * @since 2.2.0
 	 */
 	@Parameter(property = "k3s.debugToStdout", defaultValue = "false")
 	private boolean debugToStdout;
 
+	/**
+	 * Number of lines per file to write to stdout.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.debugStdoutLines", defaultValue = "200")
+	private int debugStdoutLines;
+
 	/**
 	 * Path where debug data should by written to.
 	 *
@@ -40,69 +56,143 @@ public abstract class K3sDebugMojo extends K3sMojo {
 	@Parameter(property = "k3s.debugDirectory", defaultValue = "${project.build.directory}/k3s/debug")
 	private Path debugDirectory;
 
-	@SuppressWarnings("resource")
-	void handleDebugInfos(Container container) throws MojoExecutionException {
-		var containers = debugDirectory.resolve("containers");
+	/**
+	 * Write debug data as gzip compressed tar <code>k3s-debug.tar.gz</code> in {@link #debugDirectory} instead of
+	 * single files. Only the tail of every file is kept, see {@link #debugMaxFileSize}.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.debugBundle", defaultValue = "false")
+	private boolean debugBundle;
+
+	/**
+	 * Maximum size in bytes of every file in debug bundle, only the tail of larger files is kept.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.debugMaxFileSize", defaultValue = "10485760")
+	private int debugMaxFileSize;
+
+	/**
+	 * Collect k3s logs, container logs and manifests concurrently to {@link #debugDirectory}. With multiple clusters
+	 * every cluster uses an own subdirectory, e.g. <code>debug/k3s-2</code>.
+	 *
+	 * @param docker    Docker of cluster
+	 * @param container k3s container
+	 * @param cluster   Number of cluster, starting with 1.
+	 */
+	void handleDebugInfos(Docker docker, Container container, int cluster) throws MojoExecutionException {
+		var directory = getClusters() == 1 ? debugDirectory : debugDirectory.resolve("k3s-" + cluster);
 		try {
-			Files.createDirectories(debugDirectory);
-			Files.createDirectories(containers);
+			Files.createDirectories(directory);
+			if (!debugBundle) {
+				Files.createDirectories(directory.resolve("containers"));
+			}
 		} catch (IOException e) {
 			throw new MojoExecutionException("Failed to prepare debug directory", e);
 		}
 
-		var k3sLogFile = debugDirectory.resolve("k3s.log");
-		log.info("Collect k3s docker logs to {}", k3sLogFile);
-		var callback = getDocker().getClient()
-				.logContainerCmd(container.getId())
-				.withSince(0)
-				.withStdOut(true)
-				.withStdErr(true)
-				.exec(new DockerLogCallback());
-		Await.await(log, "Collect logs of k3s.").until(() -> callback.isCompleted());
-		var k3sLogText = callback.messages.stream().collect(Collectors.joining("\n"));
-		try {
-			new FileWriter(k3sLogFile.toString()).write(k3sLogText);
+		var bundleFile = directory.resolve("k3s-debug.tar.gz");
+		try (var bundle = debugBundle ? new DebugBundle(bundleFile, debugMaxFileSize) : null) {
+			FileConsumer consumer = (name, input) -> write(directory, bundle, name, input);
+			var tasks = new ArrayList<Callable<Void>>();
+			tasks.add(() -> collectK3sLogs(docker, container, consumer));
+			tasks.add(() -> collectContainerLogs(docker, container, consumer));
+			tasks.add(() -> collectManifests(docker, container, consumer));
+			try (var scheduler = newScheduler()) {
+				for (var future : scheduler.invokeAllIo(tasks)) {
+					future.get();
+				}
+			}
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof MojoExecutionException cause ? cause
+					: new MojoExecutionException("Failed to collect debug infos", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while collecting debug infos", e);
 		} catch (IOException e) {
-			throw new MojoExecutionException("Failed to collect k3s logs", e);
+			throw new MojoExecutionException("Failed to write debug bundle " + bundleFile, e);
+		}
+		if (debugBundle) {
+			log.info("Debug data written to {}", bundleFile);
 		}
+	}
 
-		log.info("Collect container logs to {}", containers);
-		for (var logName : getDocker().exec(container, "ls", "/var/log/containers")) {
-			var realPath = getDocker().exec(container, "realpath", "/var/log/containers/" + logName).get(0);
-			getDocker().copyFromContainer(container, realPath, containers);
-			var source = containers.resolve(Paths.get(realPath).toFile().getName());
-			var destination = containers.resolve(logName);
-			log.debug("Copy container logs from {} to {}", source, destination);
-			try {
-				Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
-			} catch (IOException e) {
-				throw new MojoExecutionException(
-						"Failed to move " + source + " to " + destination + ": " + e.getMessage(), e);
+	/**
+	 * Write file to debug directory or bundle and print tail to stdout if enabled.
+	 *
+	 * @param directory Debug directory of cluster.
+	 * @param bundle    Debug bundle, <code>null</code> to write into debug directory.
+	 * @param name      Name of file relative to debug directory.
+	 * @param input     Content of file.
+	 */
+	private void write(Path directory, DebugBundle bundle, String name, InputStream input) throws IOException {
+		if (bundle != null) {
+			var content = bundle.add(name, input);
+			if (debugToStdout) {
+				print(name, new ByteArrayInputStream(content));
+			}
+			return;
+		}
+		var file = directory.resolve(name);
+		Files.copy(input, file, StandardCopyOption.REPLACE_EXISTING);
+		if (debugToStdout) {
+			try (var stream = Files.newInputStream(file)) {
+				print(name, stream);
 			}
 		}
+	}
 
-		var k3sManifests = debugDirectory.resolve("k3s.yaml");
-		log.info("Collect manifests from k3s to {}", k3sManifests);
-		getDocker().exec(container, "sh", "-c", "kubectl get all --all-namespaces --output=yaml > /tmp/k3s.yaml");
-		getDocker().copyFromContainer(container, "/tmp/k3s.yaml", debugDirectory);
+	private void print(String name, InputStream input) throws IOException {
+		log.warn("k3s {}: \n\n{}\n\n", name, String.join("\n", DebugBundle.tail(input, debugStdoutLines)));
+	}
 
-		if (debugToStdout) {
-			try {
-				log.warn("k3s manifests: \n\n{}\n\n", Files.readString(k3sManifests));
-				log.warn("k3s logs: \n\n{}\n\n", Files.readString(k3sLogFile));
-				var containerLogs = Files.list(debugDirectory.resolve("containers")).toList();
-				if (containerLogs.isEmpty()) {
-					log.warn("k3s container logs not found");
-				} else {
-					for (var containerLog : containerLogs) {
-						log.warn("k3s container {}: \n\n{}\n\n", containerLog.getFileName(),
-								Files.readString(containerLog));
-					}
+	private Void collectK3sLogs(Docker docker, Container container, FileConsumer consumer)
+			throws MojoExecutionException {
+		log.info("Collect k3s docker logs");
+		// callback is closed first if consumer fails, so docker stops writing into the pipe
+		var pipeOutput = new PipedOutputStream();
+		try (var pipeInput = new PipedInputStream(pipeOutput, 1024 * 1024);
+				var callback = docker.getClient()
+						.logContainerCmd(container.getId())
+						.withSince(0)
+						.withStdOut(true)
+						.withStdErr(true)
+						.exec(new DockerLogCallback(pipeOutput))) {
+			callback.getCompletion().whenComplete((result, error) -> {
+				try {
+					pipeOutput.close();
+				} catch (IOException e) {
+					log.debug("Failed to close pipe", e);
 				}
-			} catch (IOException e) {
-				throw new MojoExecutionException("Failed to print debug logs", e);
-			}
+			});
+			consumer.accept("k3s.log", pipeInput);
+			Await.await(log, "Collect logs of k3s.").until(callback.getCompletion());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to collect k3s logs", e);
 		}
+		return null;
+	}
+
+	private Void collectContainerLogs(Docker docker, Container container, FileConsumer consumer)
+			throws MojoExecutionException {
+		log.info("Collect container logs");
+		var count = docker.copyFilesFromContainer(container, "/var/log/containers", Duration.ofMinutes(5),
+				(name, input) -> consumer.accept("containers/" + name, input));
+		if (count == 0 && debugToStdout) {
+			log.warn("k3s container logs not found");
+		}
+		log.debug("Collected {} container logs", count);
+		return null;
+	}
+
+	private Void collectManifests(Docker docker, Container container, FileConsumer consumer)
+			throws MojoExecutionException {
+		log.info("Collect manifests from k3s");
+		docker.exec(container, "sh", "-c", "rm -rf /tmp/k3s-debug && mkdir -p /tmp/k3s-debug"
+				+ " && kubectl get all --all-namespaces --output=yaml > /tmp/k3s-debug/k3s.yaml");
+		docker.copyFilesFromContainer(container, "/tmp/k3s-debug", Duration.ofMinutes(5), consumer);
+		return null;
 	}
 
 	// setter
@@ -111,7 +201,19 @@ public abstract class K3sDebugMojo extends K3sMojo {
 		this.debugToStdout = debugToStdout;
 	}
 
+	public void setDebugStdoutLines(int debugStdoutLines) {
+		this.debugStdoutLines = debugStdoutLines;
+	}
+
 	public void setDebugDirectory(File debugDirectory) {
 		this.debugDirectory = debugDirectory.toPath().toAbsolutePath();
 	}
+
+	public void setDebugBundle(boolean debugBundle) {
+		this.debugBundle = debugBundle;
+	}
+
+	public void setDebugMaxFileSize(int debugMaxFileSize) {
+		this.debugMaxFileSize = debugMaxFileSize;
+	}
 }
@@ -1,6 +1,8 @@
 package io.kokuwa.maven.k3s.mojo;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -14,6 +16,10 @@ import io.kokuwa.maven.k3s.util.Image;
  */
 public abstract class K3sImageMojo extends K3sMojo {
 
+	private static final String ALWAYS = "always";
+	private static final String IF_NOT_PRESENT = "ifNotPresent";
+	private static final String NEVER = "never";
+
 	/**
 	 * k3s image registry.
 	 *
@@ -38,6 +44,16 @@ public abstract class K3sImageMojo extends K3sMojo {
 	@Parameter(property = "k3s.imageTag", defaultValue = "latest")
 	private String imageTag;
 
+	/**
+	 * Pull policy for k3s image: <code>always</code>, <code>ifNotPresent</code> or <code>never</code>. Defaults to
+	 * <code>always</code> for tag <code>latest</code> and <code>ifNotPresent</code> otherwise. Present images are
+	 * looked up with the docker image index shared by the reactor, so pinned tags need no registry access.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.imagePullPolicy")
+	private String imagePullPolicy;
+
 	Image getImage() {
 		return Image.of((imageRegistry == null ? "" : imageRegistry + "/") + imageRepository + ":" + imageTag);
 	}
@@ -46,12 +62,42 @@ public abstract class K3sImageMojo extends K3sMojo {
 		if ("latest".equals(imageTag)) {
 			log.warn("Using image tag 'latest' is unstable.");
 		}
-		getDocker().pullImage(getImage(), Duration.ofMinutes(10));
-		return getImage();
+
+		var image = getImage();
+		var policy = imagePullPolicy == null ? ("latest".equals(imageTag) ? ALWAYS : IF_NOT_PRESENT) : imagePullPolicy;
+		if (!List.of(ALWAYS, IF_NOT_PRESENT, NEVER).contains(policy)) {
+			throw new MojoExecutionException("Invalid pull policy '" + policy + "', use one of: "
+					+ String.join(", ", ALWAYS, IF_NOT_PRESENT, NEVER));
+		}
+
+		// lookup image in docker, index avoids listing images if docker images did not change
+
+		var index = readImageIndex();
+		if (!ALWAYS.equals(policy)) {
+			getDocker().validateImageIndex(index);
+			var present = getDocker().findImage(image, index);
+			index.write();
+			if (present.isPresent()) {
+				log.debug("Image {} found in docker as {}, skip pull with policy {}", image, present.get(), policy);
+				return image;
+			}
+			if (NEVER.equals(policy)) {
+				throw new MojoExecutionException("Image " + image + " not found in docker and pull policy is " + NEVER);
+			}
+		}
+
+		getDocker().pullImage(image, Duration.ofMinutes(10));
+		index.putDockerImage(image, Optional.empty());
+		index.write();
+		return image;
 	}
 
 	// setter
 
+	public void setImagePullPolicy(String imagePullPolicy) {
+		this.imagePullPolicy = imagePullPolicy;
+	}
+
 	public void setImageRegistry(String imageRegistry) {
 		this.imageRegistry = imageRegistry;
 	}
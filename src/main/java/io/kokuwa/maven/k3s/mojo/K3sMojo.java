@@ -1,15 +1,26 @@
 package io.kokuwa.maven.k3s.mojo;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Optional;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.kokuwa.maven.k3s.util.Docker;
+import io.kokuwa.maven.k3s.util.ImageIndex;
+import io.kokuwa.maven.k3s.util.KubeApi;
 import io.kokuwa.maven.k3s.util.Marker;
+import io.kokuwa.maven.k3s.util.Scheduler;
+import io.kokuwa.maven.k3s.util.SharedCluster;
+import io.kokuwa.maven.k3s.util.Timings;
 
 /**
  * Base class for all mojos of this plugin.
@@ -27,6 +38,64 @@ public abstract class K3sMojo extends AbstractMojo {
 	@Parameter(property = "k3s.skip", defaultValue = "false")
 	private boolean skip;
 
+	/**
+	 * Share one k3s container between all modules of a reactor, e.g. for parallel builds with <code>-T</code>. The
+	 * first module starts k3s, following modules attach to the running container and apply their manifests into an
+	 * own namespace named after the artifactId. The container is removed by <code>k3s:rm</code> at the end of the
+	 * reactor: after all modules of the reactor that execute <code>k3s:rm</code> have run it and no other module is
+	 * attached. Modules without <code>k3s:rm</code>, e.g. aggregators, are not awaited. A module that starts after
+	 * the container was removed starts a new container, which is removed by the last of these modules.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.shared", defaultValue = "false")
+	private boolean shared;
+
+	/** Directory shared by all modules of the reactor, used for the image index and locking in {@link #shared} mode. */
+	@Parameter(defaultValue = "${session.topLevelProject.build.directory}/k3s-maven-plugin", readonly = true)
+	private File sharedDirectory;
+
+	@Parameter(defaultValue = "${session}", readonly = true)
+	private MavenSession session;
+
+	@Parameter(defaultValue = "${project}", readonly = true)
+	private MavenProject project;
+
+	/**
+	 * Number of independent k3s clusters. Additional clusters use own containers and volumes suffixed with the
+	 * cluster number and kube api ports assigned by docker. Images, manifests and copies are applied to every cluster.
+	 * Can not be combined with custom port bindings.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.clusters", defaultValue = "1")
+	private int clusters;
+
+	/**
+	 * Maximum number of concurrent tasks that transfer data, e.g. docker save and ctr import of images.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.ioThreads", defaultValue = "4")
+	private int ioThreads;
+
+	/**
+	 * Maximum number of concurrent tasks that wait on k3s, e.g. rollout status or startup of clusters.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.waitThreads", defaultValue = "16")
+	private int waitThreads;
+
+	/**
+	 * Report with timings of execs, copies, images and waits as json. Reports of all mojos of a build are merged and
+	 * a summary is logged after every mojo.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.timingsFile", defaultValue = "${project.build.directory}/k3s/timings.json")
+	private Path timingsFile;
+
 	/** Name for the create docker container. */
 	@Parameter(defaultValue = "k3s-maven-plugin", readonly = true)
 	private String containerName = "k3s-maven-plugin";
@@ -42,18 +111,186 @@ public abstract class K3sMojo extends AbstractMojo {
 	// generic methods
 
 	protected final Logger log = LoggerFactory.getLogger(getClass());
+	private final Timings timings = new Timings(
+			getClass().getSimpleName().replace("Mojo", "").toLowerCase(Locale.ROOT));
 	private Docker docker;
 
+	@Override
+	public void execute() throws MojoExecutionException {
+		var timer = timings.start(Timings.MOJO, getProject() == null ? "" : getModuleId());
+		var success = false;
+		try {
+			executeMojo();
+			success = true;
+		} finally {
+			if (!timings.getSpans().isEmpty()) {
+				timer.stop(success);
+				timings.summary().forEach(line -> log.info("Timings: {}", line));
+				try {
+					timings.write(timingsFile, getBuildId());
+				} catch (MojoExecutionException e) {
+					log.warn(e.getMessage(), e.getCause());
+				}
+				timings.clear();
+			}
+		}
+	}
+
+	/** Execute mojo, spans recorded in {@link #getTimings()} are reported afterwards. */
+	protected abstract void executeMojo() throws MojoExecutionException;
+
 	public boolean isSkip(boolean skipMojo) {
 		return skip || skipMojo;
 	}
 
+	public Timings getTimings() {
+		return timings;
+	}
+
 	public Marker getMarker() {
 		return marker;
 	}
 
+	/**
+	 * Create scheduler with limits of this mojo, needs to be closed after usage.
+	 *
+	 * @return New scheduler
+	 */
+	public Scheduler newScheduler() {
+		return new Scheduler(ioThreads, waitThreads);
+	}
+
+	public MavenSession getSession() {
+		return session;
+	}
+
+	/**
+	 * Identifier of the current build, modules of a reactor share it.
+	 *
+	 * @return Start time of maven session, empty without session
+	 */
+	public String getBuildId() {
+		return session == null ? "" : String.valueOf(session.getRequest().getStartTime().getTime());
+	}
+
+	public MavenProject getProject() {
+		return project;
+	}
+
+	public boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * Read index of docker and containerd images from {@link #sharedDirectory}, so modules of a reactor share it.
+	 * Changes need to be written with {@link ImageIndex#write()}.
+	 *
+	 * @return Image index
+	 */
+	public ImageIndex readImageIndex() throws MojoExecutionException {
+		return new ImageIndex(sharedDirectory.toPath().resolve("images.properties"));
+	}
+
+	public SharedCluster getSharedCluster() {
+		return new SharedCluster(sharedDirectory);
+	}
+
+	/**
+	 * Identifier of this module in {@link #shared} mode.
+	 *
+	 * @return groupId and artifactId of current project
+	 */
+	public String getModuleId() {
+		return project.getGroupId() + ":" + project.getArtifactId();
+	}
+
+	/**
+	 * Namespace of this module in {@link #shared} mode, artifactId converted to a valid kubernetes name.
+	 *
+	 * @return Namespace name
+	 */
+	public String getSharedNamespace() {
+		var name = String.valueOf(project.getArtifactId()).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]+", "-");
+		name = name.substring(0, Math.min(name.length(), 63)).replaceAll("^-+|-+$", "");
+		return name.isEmpty() ? "default" : name;
+	}
+
 	public Docker getDocker() {
-		return docker == null ? docker = new Docker(containerName, volumeName) : docker;
+		return docker == null ? docker = getDocker(1) : docker;
+	}
+
+	/**
+	 * Docker for given cluster, the first cluster uses plain container and volume names.
+	 *
+	 * @param cluster Number of cluster, starting with 1.
+	 * @return Docker for cluster
+	 */
+	public Docker getDocker(int cluster) {
+		return cluster == 1
+				? new Docker(containerName, volumeName, timings)
+				: new Docker(containerName + "-" + cluster, volumeName + "-" + cluster, timings);
+	}
+
+	/**
+	 * Docker for the registry mirror of given cluster. Registries of all clusters share one volume.
+	 *
+	 * @param cluster Number of cluster, starting with 1.
+	 * @return Docker for registry mirror
+	 */
+	public Docker getRegistryDocker(int cluster) {
+		var name = cluster == 1 ? containerName : containerName + "-" + cluster;
+		return new Docker(volumeName + "-registry", name + "-registry", timings);
+	}
+
+	public int getClusters() {
+		return clusters;
+	}
+
+	/**
+	 * Execute task for every cluster with the docker of this cluster.
+	 *
+	 * @param task Task to execute.
+	 */
+	public void forEachCluster(ClusterTask task) throws MojoExecutionException {
+		for (var cluster = 1; cluster <= clusters; cluster++) {
+			task.execute(cluster == 1 ? getDocker() : getDocker(cluster), cluster);
+		}
+	}
+
+	/**
+	 * Kubeconfig of given cluster if multiple clusters are started, e.g. <code>target/k3s-2.yaml</code>.
+	 *
+	 * @param kubeconfig Kubeconfig of first cluster.
+	 * @param cluster    Number of cluster, starting with 1.
+	 * @return Path of kubeconfig
+	 */
+	public Path getKubeconfig(Path kubeconfig, int cluster) {
+		var name = kubeconfig.getFileName().toString().replaceAll("\\.ya?ml$", "");
+		return kubeconfig.resolveSibling(name + "-" + cluster + ".yaml");
+	}
+
+	/**
+	 * Client for kubernetes api of given cluster. Empty if kubeconfig is missing or api is not reachable from host,
+	 * e.g. with a remote docker daemon. Callers fall back to kubectl inside the container.
+	 *
+	 * @param kubeconfig Kubeconfig of first cluster.
+	 * @param cluster    Number of cluster, starting with 1.
+	 * @return Client for kubernetes api
+	 */
+	public Optional<KubeApi> getKubeApi(Path kubeconfig, int cluster) {
+		var file = clusters == 1 ? kubeconfig : getKubeconfig(kubeconfig, cluster);
+		if (!Files.isRegularFile(file)) {
+			log.debug("Kubeconfig {} not found, use kubectl", file);
+			return Optional.empty();
+		}
+		try {
+			var api = new KubeApi(file);
+			log.debug("Use kubernetes api {} with version {}", api.getServer(), api.getVersion());
+			return Optional.of(api);
+		} catch (MojoExecutionException | RuntimeException e) {
+			log.debug("Kubernetes api not usable, use kubectl: {}", e.getMessage());
+			return Optional.empty();
+		}
 	}
 
 	public String toLinuxPath(Path path) {
@@ -67,6 +304,38 @@ public abstract class K3sMojo extends AbstractMojo {
 		this.marker = new Marker(directory);
 	}
 
+	public void setSession(MavenSession session) {
+		this.session = session;
+	}
+
+	public void setProject(MavenProject project) {
+		this.project = project;
+	}
+
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+
+	public void setWaitThreads(int waitThreads) {
+		this.waitThreads = waitThreads;
+	}
+
+	public void setClusters(int clusters) {
+		this.clusters = clusters;
+	}
+
+	public void setShared(boolean shared) {
+		this.shared = shared;
+	}
+
+	public void setSharedDirectory(File sharedDirectory) {
+		this.sharedDirectory = sharedDirectory;
+	}
+
+	public void setTimingsFile(File timingsFile) {
+		this.timingsFile = timingsFile.toPath().toAbsolutePath();
+	}
+
 	public void setSkip(boolean skip) {
 		this.skip = skip;
 	}
@@ -78,4 +347,15 @@ public abstract class K3sMojo extends AbstractMojo {
 	public void setVolumeName(String volumeName) {
 		this.volumeName = volumeName;
 	}
+
+	/** Task to execute for every cluster. */
+	@FunctionalInterface
+	public interface ClusterTask {
+
+		/**
+		 * @param docker  Docker of cluster.
+		 * @param cluster Number of cluster, starting with 1.
+		 */
+		void execute(Docker docker, int cluster) throws MojoExecutionException;
+	}
 }
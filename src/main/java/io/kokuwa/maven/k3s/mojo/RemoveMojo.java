@@ -4,12 +4,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
+import io.kokuwa.maven.k3s.util.Docker;
+
 /**
  * Mojo to remove k3s container.
  *
@@ -19,8 +24,10 @@ import org.apache.maven.plugins.annotations.Parameter;
 @Mojo(name = "rm", defaultPhase = LifecyclePhase.POST_INTEGRATION_TEST, requiresProject = false)
 public class RemoveMojo extends K3sMojo {
 
+	private static final String PLUGIN = "io.kokuwa.maven:k3s-maven-plugin";
+
 	/**
-	 * Delete not only docker container, delete also cached data.
+	 * Delete not only docker container, delete also cached data, snapshots and registry mirror.
 	 *
 	 * @since 0.3.0
 	 */
@@ -44,24 +51,97 @@ public class RemoveMojo extends K3sMojo {
 	private Path kubeconfig;
 
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 
 		if (isSkip(skipRm)) {
 			return;
 		}
 
-		getDocker().getContainer().ifPresent(getDocker()::remove);
+		// in shared mode the container is removed after all modules with k3s:rm finished and no other module uses it
+
+		if (isShared()) {
+			getSharedCluster().locked(() -> {
+				if (detach()) {
+					remove(getDocker(), 1);
+				}
+				return null;
+			});
+		} else {
+			forEachCluster(this::remove);
+		}
+
 		try {
 			Files.deleteIfExists(kubeconfig);
 		} catch (IOException e) {
 			log.warn("Failed to delete {}", kubeconfig);
 		}
+	}
+
+	private void remove(Docker docker, int cluster) {
+		var registry = getRegistryDocker(cluster);
+		registry.getContainer().ifPresent(registry::remove);
+		docker.getContainer().ifPresent(docker::remove);
+		if (getClusters() > 1) {
+			var file = getKubeconfig(kubeconfig, cluster);
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				log.warn("Failed to delete {}", file);
+			}
+		}
 		if (includeCache) {
-			getDocker().removeVolume();
+			registry.removeVolume();
+			docker.removeVolume();
+			docker.removeSnapshotVolumes();
 			log.info("Deleted cache volume.");
 		}
 	}
 
+	private boolean detach() throws MojoExecutionException {
+		var sharedCluster = getSharedCluster();
+		var build = getBuildId();
+		var remaining = sharedCluster.detach(getModuleId());
+		var finished = sharedCluster.finish(build, getModuleId());
+		var pending = getRemovingModules().stream().filter(module -> !finished.contains(module)).toList();
+		if (remaining == 0 && pending.isEmpty()) {
+			return true;
+		}
+		if (remaining > 0) {
+			log.info("k3s is still used by {} other modules, skip removing container", remaining);
+		} else {
+			log.info("k3s is kept for following modules {}, skip removing container", pending);
+		}
+		var container = getDocker().getContainer().orElse(null);
+		if (container != null && getDocker().isRunning(container)) {
+			getDocker().exec(container, "kubectl", "delete", "namespace", getSharedNamespace(),
+					"--ignore-not-found", "--wait=false");
+		}
+		return false;
+	}
+
+	/**
+	 * Modules of the reactor that execute <code>k3s:rm</code>, all modules if the goal is given on command line.
+	 * Modules without this plugin, e.g. aggregators, are ignored. Without session (e.g. in tests) no other module is
+	 * expected.
+	 *
+	 * @return Module ids
+	 */
+	Set<String> getRemovingModules() {
+		var session = getSession();
+		if (session == null || session.getProjects() == null) {
+			return Set.of();
+		}
+		var goals = session.getGoals() == null ? List.<String>of() : session.getGoals();
+		var cli = goals.stream().anyMatch(goal -> goal.equals("k3s:rm") || goal.matches(PLUGIN + "(:[^:]+)?:rm"));
+		return session.getProjects().stream()
+				.filter(project -> cli || project.getBuildPlugins().stream()
+						.filter(plugin -> PLUGIN.equals(plugin.getGroupId() + ":" + plugin.getArtifactId()))
+						.flatMap(plugin -> plugin.getExecutions().stream())
+						.anyMatch(execution -> execution.getGoals().contains("rm")))
+				.map(project -> project.getGroupId() + ":" + project.getArtifactId())
+				.collect(Collectors.toSet());
+	}
+
 	// setter
 
 	public void setKubeconfig(File kubeconfig) {
@@ -7,7 +7,6 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -17,6 +16,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import com.github.dockerjava.api.model.Container;
+import io.kokuwa.maven.k3s.util.Docker;
 
 /**
  * Mojo for kubectl rollout restart.
@@ -63,7 +63,7 @@ public class RestartMojo extends K3sMojo {
 	private boolean skipRestart;
 
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 
 		if (isSkip(skipRestart)) {
 			return;
@@ -81,16 +81,21 @@ public class RestartMojo extends K3sMojo {
 			return;
 		}
 
+		forEachCluster(this::restart);
+	}
+
+	private void restart(Docker docker, int cluster) throws MojoExecutionException {
+
 		// verify container
 
-		var container = getDocker().getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
-		var tasks = resources.stream().map(r -> restart(container, r)).collect(Collectors.toSet());
+		var container = docker.getContainer().orElseThrow(() -> new MojoExecutionException("No container found"));
+		var tasks = resources.stream().map(r -> restart(docker, container, r)).collect(Collectors.toSet());
 
 		// execute callables
 
-		try {
+		try (var scheduler = newScheduler()) {
 			var success = true;
-			for (var future : Executors.newWorkStealingPool().invokeAll(tasks)) {
+			for (var future : scheduler.invokeAllWait(tasks)) {
 				success &= future.get();
 			}
 			if (!success) {
@@ -101,7 +106,7 @@ public class RestartMojo extends K3sMojo {
 		}
 	}
 
-	private Callable<Boolean> restart(Container container, String resoure) {
+	private Callable<Boolean> restart(Docker docker, Container container, String resoure) {
 
 		var matcher = resourcePattern.matcher(resoure);
 		if (!matcher.matches()) {
@@ -115,14 +120,14 @@ public class RestartMojo extends K3sMojo {
 
 		return () -> {
 			try {
-				getDocker().exec(container, "kubectl", "rollout", "restart", kind, name, "--namespace=" + namespace);
+				docker.exec(container, "kubectl", "rollout", "restart", kind, name, "--namespace=" + namespace);
 				log.info("{} {}/{} restarted", kind, namespace, name);
-				getDocker().exec(container, timeout.plusSeconds(5), "kubectl", "rollout", "status", kind, name,
+				docker.exec(container, timeout.plusSeconds(5), "kubectl", "rollout", "status", kind, name,
 						"--namespace=" + namespace, "--timeout=" + timeout.getSeconds() + "s");
 				log.info("{} {}/{} restart finished", kind, namespace, name);
 				return true;
 			} catch (MojoExecutionException e) {
-				getDocker().exec(container, "kubectl", "get", "--output=yaml", "--namespace=" + namespace, kind, name);
+				docker.exec(container, "kubectl", "get", "--output=yaml", "--namespace=" + namespace, kind, name);
 				return false;
 			}
 		};
@@ -4,12 +4,18 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -19,6 +25,8 @@ import org.apache.maven.plugins.annotations.Parameter;
 
 import com.github.dockerjava.api.model.Container;
 import io.kokuwa.maven.k3s.util.Await;
+import io.kokuwa.maven.k3s.util.Docker;
+import io.kokuwa.maven.k3s.util.Image;
 
 /**
  * Mojo for start k3s container.
@@ -29,6 +37,9 @@ import io.kokuwa.maven.k3s.util.Await;
 @Mojo(name = "run", defaultPhase = LifecyclePhase.PRE_INTEGRATION_TEST, requiresProject = false)
 public class RunMojo extends K3sImageMojo {
 
+	/** Address of registry mirror inside network of k3s container. */
+	private static final String REGISTRY_MIRROR_ADDRESS = "127.0.0.1:5000";
+
 	/**
 	 * Disable servicelb.
 	 *
@@ -225,8 +236,54 @@ public class RunMojo extends K3sImageMojo {
 	@Parameter(property = "k3s.dnsResolverDomain", defaultValue = "k3s-maven-plugin.127.0.0.1.nip.io")
 	private String dnsResolverDomain;
 
+	/**
+	 * Start k3s from a snapshot of the k3s server state. The snapshot is created after the first healthy start and
+	 * stored in a docker volume keyed by k3s image digest and k3s flags. Following runs skip the k3s bootstrap.
+	 * Resources created by <code>k3s:apply</code> are not part of the snapshot. Snapshot volumes are deleted by
+	 * <code>k3s:rm</code> with <code>k3s.includeCache</code>.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.snapshot", defaultValue = "false")
+	private boolean snapshot;
+
+	/**
+	 * Start a registry as pull-through cache for {@link #registryMirrorRemote} next to k3s. The registry stores
+	 * blobs in an own volume that survives <code>k3s:rm</code> without <code>k3s.includeCache</code>, so images are
+	 * downloaded only once. A <code>registries.yaml</code> pointing to the mirror is generated, therefore this can not
+	 * be combined with {@link #registries}.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.registryMirror", defaultValue = "false")
+	private boolean registryMirror;
+
+	/**
+	 * Registry to mirror with {@link #registryMirror}.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.registryMirrorRemote", defaultValue = "https://registry-1.docker.io")
+	private String registryMirrorRemote;
+
+	/**
+	 * Registry name used by containerd for {@link #registryMirrorRemote}.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.registryMirrorName", defaultValue = "docker.io")
+	private String registryMirrorName;
+
+	/**
+	 * Image for {@link #registryMirror}.
+	 *
+	 * @since 2.3.2
+	 */
+	@Parameter(property = "k3s.registryMirrorImage", defaultValue = "docker.io/library/registry:2")
+	private String registryMirrorImage;
+
 	@Override
-	public void execute() throws MojoExecutionException {
+	protected void executeMojo() throws MojoExecutionException {
 
 		// check dns
 
@@ -243,19 +300,163 @@ public class RunMojo extends K3sImageMojo {
 			return;
 		}
 
+		// generate registries.yaml for mirror, parameter is kept for following executions of this mojo
+
+		var registriesFile = registryMirror ? writeMirrorRegistries() : registries;
+
+		// start container, in shared mode another module of the reactor may have started k3s already
+
+		if (getClusters() > 1) {
+			if (isShared()) {
+				throw new MojoExecutionException("Shared mode does not support multiple clusters");
+			}
+			startClusters(registriesFile);
+			return;
+		}
+		var container = isShared()
+				? getSharedCluster().locked(() -> startSharedContainer(registriesFile))
+				: startContainer(getDocker(), getRegistryDocker(1), getPorts(), registriesFile, null);
+		writeKubeconfig(getDocker(), container, kubeconfig);
+	}
+
+	/**
+	 * Write <code>registries.yaml</code> that points to the registry mirror.
+	 *
+	 * @return Path of generated file
+	 */
+	private Path writeMirrorRegistries() throws MojoExecutionException {
+		if (registries != null) {
+			throw new MojoExecutionException("Registry mirror can not be combined with custom registries.yaml");
+		}
+		var file = kubeconfig.resolveSibling("k3s-registries.yaml");
+		try {
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, "mirrors:\n"
+					+ "  \"" + registryMirrorName + "\":\n"
+					+ "    endpoint:\n"
+					+ "      - \"http://" + REGISTRY_MIRROR_ADDRESS + "\"\n");
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to write registries.yaml for mirror: " + e.getMessage(), e);
+		}
+		return file;
+	}
+
+	/**
+	 * Start all clusters concurrently and write one kubeconfig per cluster, e.g. <code>target/k3s-2.yaml</code>. The
+	 * kubeconfig of first cluster is written to {@link #kubeconfig} too. Paths are exposed as comma separated list in
+	 * project property <code>k3s.kubeconfigs</code>. The kube api of additional clusters is published on a host port
+	 * assigned by docker.
+	 */
+	private void startClusters(Path registriesFile) throws MojoExecutionException {
+
+		if (!portBindings.isEmpty()) {
+			throw new MojoExecutionException("Port bindings " + portBindings + " can not be combined with "
+					+ getClusters() + " clusters, every cluster would bind the same host ports");
+		}
+
+		// resolve image once, concurrent pulls would update the image index concurrently
+
+		var image = pullImage();
+		var tasks = new ArrayList<Callable<Container>>();
+		var dockers = new ArrayList<Docker>();
+		for (var cluster = 1; cluster <= getClusters(); cluster++) {
+			var docker = cluster == 1 ? getDocker() : getDocker(cluster);
+			var registry = getRegistryDocker(cluster);
+			var ports = cluster == 1 ? getPorts() : List.of(String.valueOf(portKubeApi));
+			dockers.add(docker);
+			tasks.add(() -> startContainer(docker, registry, ports, registriesFile, image));
+		}
+
+		try (var scheduler = newScheduler()) {
+			var kubeconfigs = new ArrayList<String>();
+			var futures = scheduler.invokeAllWait(tasks);
+			for (var cluster = 1; cluster <= futures.size(); cluster++) {
+				var file = getKubeconfig(kubeconfig, cluster);
+				writeKubeconfig(dockers.get(cluster - 1), futures.get(cluster - 1).get(), file);
+				kubeconfigs.add(file.toString());
+			}
+			Files.copy(Path.of(kubeconfigs.get(0)), kubeconfig, StandardCopyOption.REPLACE_EXISTING);
+			getProject().getProperties().put("k3s.kubeconfigs", String.join(",", kubeconfigs));
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof MojoExecutionException cause ? cause
+					: new MojoExecutionException("Failed to start clusters", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while starting clusters", e);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to write kubeconfig: " + e.getMessage(), e);
+		}
+	}
+
+	private void writeKubeconfig(Docker docker, Container container, Path file) throws MojoExecutionException {
+		docker.copyFromContainer(container, "/etc/rancher/k3s/k3s.yaml", file.getParent());
+		if (!"k3s.yaml".equals(file.getFileName().toString())) {
+			try {
+				Files.move(file.getParent().resolve("k3s.yaml"), file, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to write kubeconfig: " + e.getMessage(), e);
+			}
+		}
+		var hostPort = docker.getHostPort(container, portKubeApi).orElse(portKubeApi);
+		if (hostPort != portKubeApi) {
+			try {
+				log.debug("Replace k3s port in config {} with {}", file, hostPort);
+				Files.writeString(file, Files.readString(file)
+						.replace("127.0.0.1:" + portKubeApi, "127.0.0.1:" + hostPort));
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to write kubeconfig with host port: " + e.getMessage(), e);
+			}
+		}
+		if (hostname != null && !hostname.equals("localhost") && !hostname.equals("127.0.0.1")) {
+			try {
+				log.debug("Replace k3s host in config {} with {}", file, hostname);
+				Files.writeString(file, Files.readString(file).replace("127.0.0.1", hostname));
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to write kubeconfig with updated host:" + e.getMessage(), e);
+			}
+		}
+		log.info("k3s ready: KUBECONFIG={} kubectl get all --all-namespaces", file);
+	}
+
+	private Container startSharedContainer(Path registriesFile) throws MojoExecutionException {
+		var container = getDocker().getContainer().filter(getDocker()::isRunning).orElse(null);
+		if (container == null) {
+			getSharedCluster().reset();
+			container = startContainer(getDocker(), getRegistryDocker(1), getPorts(), registriesFile, null);
+		}
+		var others = getSharedCluster().attach(getModuleId());
+		if (others > 0) {
+			log.info("Container with id '{}' found, shared with {} other modules", container.getId(), others);
+		}
+		return container;
+	}
+
+	/**
+	 * Start k3s container of a cluster.
+	 *
+	 * @param docker         Docker of cluster.
+	 * @param registry       Docker of registry mirror of cluster.
+	 * @param ports          Port bindings of container.
+	 * @param registriesFile registries.yaml to mount, custom or generated for registry mirror.
+	 * @param image          Resolved k3s image, <code>null</code> to resolve with pull policy if container is created.
+	 * @return Started container
+	 */
+	private Container startContainer(Docker docker, Docker registry, List<String> ports, Path registriesFile,
+			Image image) throws MojoExecutionException {
+
 		// check container
 
 		var create = true;
 		var restart = false;
-		var container = getDocker().getContainer().orElse(null);
+		var container = docker.getContainer().orElse(null);
 		if (container != null) {
 			if (failIfExists) {
 				throw new MojoExecutionException("Container with id '" + container.getId()
 						+ "' found. Please remove that container or set 'k3s.failIfExists' to false.");
 			} else if (replaceIfExists) {
 				log.info("Container with id '{}' found, replacing", container.getId());
-				getDocker().remove(container);
-			} else if (!getDocker().isRunning(container)) {
+				docker.remove(container);
+			} else if (!docker.isRunning(container)) {
 				log.warn("Container with id '{}' found in stopped state, restart container", container.getId());
 				create = false;
 				restart = true;
@@ -269,45 +470,67 @@ public class RunMojo extends K3sImageMojo {
 
 		if (create || restart) {
 
+			var createSnapshot = false;
 			if (create) {
-				container = createContainer();
+				var command = getCommand(registriesFile);
+				var k3sImage = image == null ? pullImage() : image;
+				String snapshotVolume = null;
+				if (snapshot) {
+					snapshotVolume = docker.getSnapshotVolumeName(getSnapshotKey(docker, k3sImage, command));
+					createSnapshot = !docker.isVolumePresent(snapshotVolume);
+					log.info(createSnapshot ? "Snapshot {} not found, create after k3s is up and running"
+							: "Snapshot {} found, start k3s from snapshot", snapshotVolume);
+					docker.createVolume(snapshotVolume);
+				}
+				docker.createVolume();
+				container = docker.createContainer(k3sImage, registriesFile, ports, command, snapshotVolume);
 			}
-			getDocker().start(container);
+			docker.start(container);
+			startRegistryMirror(registry, container);
 
 			// wait for k3s api to be ready
 
 			var await = Await.await(log, "k3s api available").timeout(nodeTimeout);
-			getDocker().waitForLog(container, await,
-					output -> output.stream().anyMatch(l -> l.contains("k3s is up and running")));
+			docker.waitForLog(container, await, line -> line.contains("k3s is up and running"));
+
+			// create snapshot and wait for k3s api again, only log lines of the new start are matched
+
+			if (createSnapshot) {
+				docker.createSnapshot(container);
+				docker.start(container);
+				startRegistryMirror(registry, container);
+				docker.waitForLog(container, Await.await(log, "k3s api available").timeout(nodeTimeout),
+						line -> line.contains("k3s is up and running"));
+				log.info("Snapshot created");
+			}
 
 			// write file that k3s started
 
 			getMarker().writeStarted();
 		}
 
-		getDocker().copyFromContainer(container, "/etc/rancher/k3s/k3s.yaml", kubeconfig.getParent());
-		if (!"k3s.yaml".equals(kubeconfig.getFileName().toString())) {
-			try {
-				Files.move(kubeconfig.getParent().resolve("k3s.yaml"), kubeconfig, StandardCopyOption.REPLACE_EXISTING);
-			} catch (IOException e) {
-				throw new MojoExecutionException("Failed to write kubeconfig: " + e.getMessage(), e);
-			}
+		return container;
+	}
+
+	/**
+	 * (Re)create registry mirror, the network namespace of the k3s container changes on every start of k3s.
+	 */
+	private void startRegistryMirror(Docker registry, Container k3s) throws MojoExecutionException {
+		if (!registryMirror) {
+			return;
 		}
-		if (hostname != null && !hostname.equals("localhost") && !hostname.equals("127.0.0.1")) {
-			try {
-				log.debug("Replace k3s host in config {} with {}", kubeconfig, hostname);
-				Files.writeString(kubeconfig, Files.readString(kubeconfig).replace("127.0.0.1", hostname));
-			} catch (IOException e) {
-				throw new MojoExecutionException("Failed to write kubeconfig with updated host:" + e.getMessage(), e);
-			}
+		registry.getContainer().ifPresent(registry::remove);
+		var image = Image.of(registryMirrorImage);
+		if (registry.findImage(image).isEmpty()) {
+			registry.pullImage(image, Duration.ofMinutes(10));
 		}
-		log.info("k3s ready: KUBECONFIG={} kubectl get all --all-namespaces", kubeconfig);
+		registry.createVolume();
+		var container = registry.createRegistryContainer(image, k3s, REGISTRY_MIRROR_ADDRESS, registryMirrorRemote);
+		registry.start(container);
+		log.info("Registry mirror for {} started", registryMirrorName);
 	}
 
-	private Container createContainer() throws MojoExecutionException {
-
-		// k3s command
-
+	private List<String> getCommand(Path registriesFile) throws MojoExecutionException {
 		var command = new ArrayList<>(List.of("server", "--node-name=k3s", "--https-listen-port=" + portKubeApi));
 		if (hostname != null) {
 			command.add("--tls-san=" + hostname);
@@ -348,9 +571,9 @@ public class RunMojo extends K3sImageMojo {
 		if (disableCoredns) {
 			command.add("--disable=coredns");
 		}
-		if (registries != null) {
-			if (!Files.isRegularFile(registries)) {
-				throw new MojoExecutionException("Registries file '" + registries + "' not found.");
+		if (registriesFile != null) {
+			if (!Files.isRegularFile(registriesFile)) {
+				throw new MojoExecutionException("Registries file '" + registriesFile + "' not found.");
 			}
 			command.add("--private-registry=/etc/rancher/k3s/registries.yaml");
 			if (disableDefaultRegistryEndpoint) {
@@ -360,13 +583,24 @@ public class RunMojo extends K3sImageMojo {
 			log.warn("Skip setting --disable-default-registry-endpoint because no registries were configured.");
 		}
 		log.info("k3s {}", command.stream().collect(Collectors.joining(" ")));
+		return command;
+	}
 
-		// create container
-
+	private List<String> getPorts() {
 		var ports = new ArrayList<>(portBindings);
 		ports.add(portKubeApi + ":" + portKubeApi);
-		getDocker().createVolume();
-		return getDocker().createContainer(pullImage(), registries, ports, command);
+		return ports;
+	}
+
+	private String getSnapshotKey(Docker docker, Image image, List<String> command) throws MojoExecutionException {
+		var digest = docker.findImage(image).map(Image::digest).orElse(image.toString());
+		try {
+			var hash = MessageDigest.getInstance("SHA-256")
+					.digest((digest + " " + String.join(" ", command)).getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(hash).substring(0, 12);
+		} catch (NoSuchAlgorithmException e) {
+			throw new MojoExecutionException("Failed to calculate snapshot key", e);
+		}
 	}
 
 	// setter
@@ -466,4 +700,24 @@ public class RunMojo extends K3sImageMojo {
 	public void setHostname(String hostname) {
 		this.hostname = hostname;
 	}
+
+	public void setSnapshot(boolean snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	public void setRegistryMirror(boolean registryMirror) {
+		this.registryMirror = registryMirror;
+	}
+
+	public void setRegistryMirrorRemote(String registryMirrorRemote) {
+		this.registryMirrorRemote = registryMirrorRemote;
+	}
+
+	public void setRegistryMirrorName(String registryMirrorName) {
+		this.registryMirrorName = registryMirrorName;
+	}
+
+	public void setRegistryMirrorImage(String registryMirrorImage) {
+		this.registryMirrorImage = registryMirrorImage;
+	}
 }
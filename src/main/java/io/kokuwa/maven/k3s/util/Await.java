@@ -3,6 +3,10 @@ package io.kokuwa.maven.k3s.util;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -39,6 +43,10 @@ public class Await {
 		this.onTimeout = () -> {};
 	}
 
+	public String getText() {
+		return text;
+	}
+
 	public Await interval(Duration newInterval) {
 		this.interval = newInterval;
 		return this;
@@ -60,13 +68,17 @@ public class Await {
 
 	public <V> V until(Callable<V> supplier, Function<V, Boolean> check) throws MojoExecutionException {
 
+		var event = event();
 		Exception lastException = null;
 		var started = Instant.now().plus(timeout);
 		while (Instant.now().isBefore(started)) {
 			try {
+				event.polls++;
 				V value = supplier.call();
 				if (check.apply(value)) {
 					log.debug(text);
+					event.success = true;
+					event.commit();
 					return value;
 				}
 				lastException = null;
@@ -75,7 +87,9 @@ public class Await {
 				log.debug("Await {} failed with exception {}", text, e.getMessage());
 			}
 			wait(interval);
+			event.sleep += interval.toMillis();
 		}
+		event.commit();
 
 		if (lastException != null) {
 			log.error("Await {} had exception while waiting", text, lastException);
@@ -85,6 +99,40 @@ public class Await {
 		throw new MojoExecutionException(text + " did not complete in " + timeout.toSeconds() + " seconds");
 	}
 
+	/**
+	 * Block on given future instead of polling.
+	 *
+	 * @param future Future to wait for.
+	 * @return Value of future.
+	 */
+	public <V> V until(Future<V> future) throws MojoExecutionException {
+		var event = event();
+		try {
+			var value = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			log.debug(text);
+			event.success = true;
+			return value;
+		} catch (TimeoutException e) {
+			onTimeout.run();
+			throw new MojoExecutionException(text + " did not complete in " + timeout.toSeconds() + " seconds");
+		} catch (ExecutionException e) {
+			log.error("Await {} had exception while waiting", text, e.getCause());
+			throw new MojoExecutionException(text + " failed: " + e.getCause().getMessage(), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException(text + " interrupted");
+		} finally {
+			event.commit();
+		}
+	}
+
+	private Events.Await event() {
+		var event = new Events.Await();
+		event.text = text;
+		event.begin();
+		return event;
+	}
+
 	private void wait(Duration duration) throws MojoExecutionException {
 		try {
 			Thread.sleep(duration.toMillis());
@@ -0,0 +1,62 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Persistent index of values per k3s container, stored in the marker directory, e.g. digests of applied kubernetes
+ * objects or fingerprints of copied files. Values are valid as long as the k3s container was not restarted.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class ContainerIndex extends PropertiesIndex {
+
+	ContainerIndex(Path file) throws MojoExecutionException {
+		super(file);
+	}
+
+	/**
+	 * Values for given container.
+	 *
+	 * @param name  Name of k3s container, can be suffixed to store multiple maps per container.
+	 * @param state State of container, e.g. id and start timestamp. Index is dropped if state changes.
+	 * @return Values by key, empty if not indexed or container was recreated or restarted.
+	 */
+	public synchronized Map<String, String> get(String name, String state) {
+		var values = new TreeMap<String, String>();
+		var value = getValue(name);
+		if (value != null && value.startsWith(state + "\n")) {
+			for (var row : value.substring(state.length() + 1).split("\n")) {
+				var index = row.lastIndexOf('=');
+				if (index > 0) {
+					values.put(row.substring(0, index), row.substring(index + 1));
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Add values for given container, values of other keys are kept. Values are dropped if state changed.
+	 *
+	 * @param name   Name of k3s container, can be suffixed to store multiple maps per container.
+	 * @param state  State of container, e.g. id and start timestamp.
+	 * @param values Values to add or replace.
+	 */
+	public synchronized void merge(String name, String state, Map<String, String> values) {
+		var merged = get(name, state);
+		merged.putAll(values);
+		put(name, state, merged);
+	}
+
+	public synchronized void put(String name, String state, Map<String, String> values) {
+		setValue(name, state + "\n" + new TreeMap<>(values).entrySet().stream()
+				.map(entry -> entry.getKey() + "=" + entry.getValue())
+				.collect(Collectors.joining("\n")));
+	}
+}
@@ -0,0 +1,138 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+/**
+ * Gzip compressed tar with debug data. Files are streamed into the bundle and only the tail of every file is kept. An
+ * index with original and stored size of every file is written as last entry.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class DebugBundle implements Closeable {
+
+	public static final String INDEX = "index.tsv";
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final TarArchiveOutputStream tar;
+	private final int maxFileSize;
+	private final List<String> index = new ArrayList<>();
+
+	/**
+	 * Create bundle, needs to be closed to finish the archive.
+	 *
+	 * @param file        Bundle file, e.g. <code>target/k3s/debug/k3s-debug.tar.gz</code>.
+	 * @param maxFileSize Maximum number of bytes to keep per file, only the tail is kept.
+	 */
+	public DebugBundle(Path file, int maxFileSize) throws IOException {
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		this.maxFileSize = Math.max(1, maxFileSize);
+		this.tar = new TarArchiveOutputStream(
+				new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file), CHUNK_SIZE), CHUNK_SIZE));
+		this.tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+		this.tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+		this.index.add("name\tsize\tstored");
+	}
+
+	/**
+	 * Add file to bundle. Input is read completely, but only the tail is buffered and stored. Files can be added
+	 * concurrently.
+	 *
+	 * @param name  Name of file inside bundle.
+	 * @param input Content of file, not closed.
+	 * @return Stored content
+	 */
+	public byte[] add(String name, InputStream input) throws IOException {
+
+		var chunks = new ArrayDeque<byte[]>();
+		var size = 0L;
+		var kept = 0L;
+		var buffer = new byte[CHUNK_SIZE];
+		var read = input.read(buffer);
+		while (read != -1) {
+			chunks.add(Arrays.copyOf(buffer, read));
+			size += read;
+			kept += read;
+			while (kept - chunks.getFirst().length >= maxFileSize) {
+				kept -= chunks.removeFirst().length;
+			}
+			read = input.read(buffer);
+		}
+
+		var output = new ByteArrayOutputStream((int) kept);
+		chunks.forEach(output::writeBytes);
+		var content = output.toByteArray();
+		if (content.length > maxFileSize) {
+			content = Arrays.copyOfRange(content, lineStart(content, content.length - maxFileSize), content.length);
+		}
+
+		synchronized (this) {
+			var entry = new TarArchiveEntry(name);
+			entry.setSize(content.length);
+			tar.putArchiveEntry(entry);
+			tar.write(content);
+			tar.closeArchiveEntry();
+			index.add(name + "\t" + size + "\t" + content.length);
+		}
+		return content;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		var content = (String.join("\n", index) + "\n").getBytes(StandardCharsets.UTF_8);
+		var entry = new TarArchiveEntry(INDEX);
+		entry.setSize(content.length);
+		tar.putArchiveEntry(entry);
+		tar.write(content);
+		tar.closeArchiveEntry();
+		tar.close();
+	}
+
+	/**
+	 * Read last lines of input without keeping the whole input in memory.
+	 *
+	 * @param input Input to read, not closed.
+	 * @param lines Number of lines to keep.
+	 * @return Last lines of input
+	 */
+	public static List<String> tail(InputStream input, int lines) throws IOException {
+		var tail = new RingBuffer<String>(Math.max(1, lines));
+		var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		var line = reader.readLine();
+		while (line != null) {
+			tail.add(line);
+			line = reader.readLine();
+		}
+		return List.copyOf(tail);
+	}
+
+	/** Start of first complete line at or after offset, to avoid partial lines after truncation. */
+	private static int lineStart(byte[] content, int offset) {
+		if (offset > 0 && content[offset - 1] == '\n') {
+			return offset;
+		}
+		for (var i = offset; i < content.length; i++) {
+			if (content[i] == '\n' && i + 1 < content.length) {
+				return i + 1;
+			}
+		}
+		return offset;
+	}
+}
@@ -1,32 +1,49 @@
 package io.kokuwa.maven.k3s.util;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.dockerjava.api.DockerClient;
+import com.github.dockerjava.api.async.ResultCallback;
 import com.github.dockerjava.api.exception.NotFoundException;
 import com.github.dockerjava.api.model.Container;
+import com.github.dockerjava.api.model.Event;
+import com.github.dockerjava.api.model.EventType;
+import com.github.dockerjava.api.model.ExposedPort;
 import com.github.dockerjava.api.model.HostConfig;
 import com.github.dockerjava.api.model.Mount;
 import com.github.dockerjava.api.model.MountType;
 import com.github.dockerjava.api.model.PortBinding;
+import com.github.dockerjava.api.model.Ports;
 import com.github.dockerjava.core.DefaultDockerClientConfig;
 import com.github.dockerjava.core.DockerClientImpl;
 import com.github.dockerjava.zerodep.ZerodepDockerHttpClient;
@@ -41,17 +58,28 @@ import com.github.dockerjava.zerodep.ZerodepDockerHttpClient;
 public class Docker {
 
 	private static final Logger log = LoggerFactory.getLogger(Docker.class);
+	private static final int LOG_TAIL = 200;
+	private static final int PIPE_SIZE = 1024 * 1024;
+	private static final int SYNC_DELETE_BATCH = 500;
+	private static final String SNAPSHOT_PATH = "/var/lib/rancher/k3s-snapshot";
+	private static final String SNAPSHOT_VOLUME_INFIX = "-snapshot-";
 
 	private final DockerClient client;
 	private final String containerName;
 	private final String volumeName;
+	private final Timings timings;
 
 	public Docker(String volumeName, String containerName) {
+		this(volumeName, containerName, new Timings(null));
+	}
+
+	public Docker(String volumeName, String containerName, Timings timings) {
 		var config = DefaultDockerClientConfig.createDefaultConfigBuilder().build();
 		var httpClient = new ZerodepDockerHttpClient.Builder().dockerHost(config.getDockerHost()).build();
 		this.client = DockerClientImpl.getInstance(config, httpClient);
 		this.volumeName = volumeName;
 		this.containerName = containerName;
+		this.timings = timings;
 	}
 
 	public DockerClient getClient() {
@@ -61,31 +89,88 @@ public class Docker {
 	// volume
 
 	public boolean isVolumePresent() {
+		return isVolumePresent(volumeName);
+	}
+
+	public boolean isVolumePresent(String name) {
 		try {
-			return client.inspectVolumeCmd(volumeName).exec() != null;
+			return client.inspectVolumeCmd(name).exec() != null;
 		} catch (NotFoundException e) {
 			return false;
 		}
 	}
 
 	public void createVolume() {
-		if (isVolumePresent()) {
-			log.trace("Cache volume {} found, skip creating", volumeName);
+		createVolume(volumeName);
+	}
+
+	public void createVolume(String name) {
+		if (isVolumePresent(name)) {
+			log.trace("Cache volume {} found, skip creating", name);
 		} else {
-			client.createVolumeCmd().withName(volumeName).exec();
-			log.debug("Cache volume {} created", volumeName);
+			client.createVolumeCmd().withName(name).exec();
+			log.debug("Cache volume {} created", name);
 		}
 	}
 
 	public void removeVolume() {
-		if (isVolumePresent()) {
-			client.removeVolumeCmd(volumeName).exec();
-			log.debug("Volume {} removed", volumeName);
+		removeVolume(volumeName);
+	}
+
+	public void removeVolume(String name) {
+		if (isVolumePresent(name)) {
+			client.removeVolumeCmd(name).exec();
+			log.debug("Volume {} removed", name);
 		} else {
-			log.trace("Volume {} not found, skip removing", volumeName);
+			log.trace("Volume {} not found, skip removing", name);
+		}
+	}
+
+	// snapshot
+
+	/**
+	 * Name of volume for k3s server snapshot.
+	 *
+	 * @param key Key of snapshot, e.g. hash of k3s image and flags.
+	 * @return Volume name.
+	 */
+	public String getSnapshotVolumeName(String key) {
+		return volumeName + SNAPSHOT_VOLUME_INFIX + key;
+	}
+
+	public void removeSnapshotVolumes() {
+		var volumes = client.listVolumesCmd()
+				.withFilter("name", List.of(volumeName + SNAPSHOT_VOLUME_INFIX))
+				.exec().getVolumes();
+		if (volumes != null) {
+			volumes.forEach(volume -> removeVolume(volume.getName()));
 		}
 	}
 
+	/**
+	 * Stop container and copy k3s server state and node password to snapshot volume. Container needs to be started
+	 * afterwards.
+	 */
+	public void createSnapshot(Container container) throws MojoExecutionException {
+		client.stopContainerCmd(container.getId()).exec();
+		log.debug("Container {} stopped for snapshot", container.getId());
+		for (var path : List.of("/var/lib/rancher/k3s/server", "/etc/rancher/node")) {
+			var event = copyEvent(containerName + ":" + path, SNAPSHOT_PATH);
+			try (var stream = new Events.CountingInputStream(
+					client.copyArchiveFromContainerCmd(container.getId(), path).exec())) {
+				client.copyArchiveToContainerCmd(container.getId())
+						.withTarInputStream(stream)
+						.withRemotePath(SNAPSHOT_PATH)
+						.exec();
+				event.bytes = stream.getCount();
+				event.commit();
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to copy " + path + " to snapshot", e);
+			}
+		}
+		log.debug("Container {} snapshot created", container.getId());
+	}
+
 	// images
 
 	public Optional<Image> findImage(Image image) {
@@ -120,19 +205,25 @@ public class Docker {
 	}
 
 	public void pullImage(Image image, Duration timeout) throws MojoExecutionException {
-		var callback = client.pullImageCmd(image.toString()).exec(new DockerPullCallback(image));
-		Await.await(log, "pull images").timeout(timeout).until(callback::isCompleted);
-		if (!callback.isSuccess()) {
-			throw new MojoExecutionException("Failed to pull image " + image);
-		}
+		pullImage(new DockerPullCallback(image), timeout);
 	}
 
-	public void saveImage(Image image, Path target) throws MojoExecutionException {
-		try {
-			FileUtils.copyInputStreamToFile(client.saveImageCmd(image.toString()).exec(), target.toFile());
-		} catch (IOException e) {
-			throw new MojoExecutionException("Failed to write image to file", e);
-		}
+	/**
+	 * Pull image with given callback, e.g. to observe progress of layers.
+	 *
+	 * @param callback Callback with image to pull.
+	 * @param timeout  Timeout for pull.
+	 */
+	public void pullImage(DockerPullCallback callback, Duration timeout) throws MojoExecutionException {
+		var image = callback.getImage();
+		timings.time(Timings.PULL, image.toString(), () -> {
+			client.pullImageCmd(image.toString()).exec(callback);
+			Await.await(log, "pull images").timeout(timeout).until(callback.getCompletion());
+			if (!callback.isSuccess()) {
+				throw new MojoExecutionException("Failed to pull image " + image);
+			}
+			return null;
+		});
 	}
 
 	public void removeImage(Image image) {
@@ -148,7 +239,7 @@ public class Docker {
 	public Optional<Container> getContainer() {
 		return client.listContainersCmd()
 				.withShowAll(true)
-				.withNameFilter(Set.of(containerName))
+				.withNameFilter(Set.of("^/" + containerName + "$"))
 				.exec().stream().findFirst();
 	}
 
@@ -157,6 +248,15 @@ public class Docker {
 			Path registries,
 			List<String> portBindings,
 			List<String> command) {
+		return createContainer(dockerImage, registries, portBindings, command, null);
+	}
+
+	public Container createContainer(
+			Image dockerImage,
+			Path registries,
+			List<String> portBindings,
+			List<String> command,
+			String snapshotVolume) {
 		// host config
 
 		var mounts = new ArrayList<Mount>();
@@ -171,6 +271,12 @@ public class Docker {
 					.withSource(registries.toAbsolutePath().toString())
 					.withTarget("/etc/rancher/k3s/registries.yaml"));
 		}
+		if (snapshotVolume != null) {
+			mounts.add(new Mount()
+					.withType(MountType.VOLUME)
+					.withSource(snapshotVolume)
+					.withTarget(SNAPSHOT_PATH));
+		}
 		var hostConfig = new HostConfig()
 				.withPrivileged(true)
 				.withMounts(mounts)
@@ -178,8 +284,17 @@ public class Docker {
 
 		// container
 
-		var container = client
-				.createContainerCmd(dockerImage.toString())
+		var createCommand = client.createContainerCmd(dockerImage.toString());
+		if (snapshotVolume != null) {
+			// restore snapshot (if present) on first start of container before starting k3s
+			createCommand.withEntrypoint("/bin/sh", "-c", "if [ -d " + SNAPSHOT_PATH + "/server ]"
+					+ " && [ ! -d /var/lib/rancher/k3s/server ]; then "
+					+ "mkdir -p /var/lib/rancher/k3s /etc/rancher"
+					+ " && cp -a " + SNAPSHOT_PATH + "/server /var/lib/rancher/k3s/"
+					+ " && cp -a " + SNAPSHOT_PATH + "/node /etc/rancher/; "
+					+ "fi; exec /bin/k3s \"$@\"", "k3s");
+		}
+		var container = createCommand
 				.withName(containerName)
 				.withCmd(command)
 				.withExposedPorts(List.copyOf(hostConfig.getPortBindings().getBindings().keySet()))
@@ -196,13 +311,63 @@ public class Docker {
 				.exec().get(0);
 	}
 
+	/**
+	 * Create registry as pull-through cache. The registry shares the network namespace of the k3s container, so
+	 * containerd reaches the registry with the given address and no port is exposed on the docker host.
+	 *
+	 * @param dockerImage Registry image.
+	 * @param k3s         Running k3s container.
+	 * @param address     Address to listen on, e.g. <code>127.0.0.1:5000</code>.
+	 * @param remoteUrl   Url of registry to mirror.
+	 * @return Created container.
+	 */
+	public Container createRegistryContainer(Image dockerImage, Container k3s, String address, String remoteUrl) {
+		var hostConfig = new HostConfig()
+				.withNetworkMode("container:" + k3s.getId())
+				.withMounts(List.of(new Mount()
+						.withType(MountType.VOLUME)
+						.withSource(volumeName)
+						.withTarget("/var/lib/registry")));
+		var container = client.createContainerCmd(dockerImage.toString())
+				.withName(containerName)
+				.withEnv("REGISTRY_HTTP_ADDR=" + address, "REGISTRY_PROXY_REMOTEURL=" + remoteUrl)
+				.withHostConfig(hostConfig)
+				.exec();
+		log.debug("Registry container created with id {}", container.getId());
+
+		return client.listContainersCmd()
+				.withShowAll(true)
+				.withIdFilter(Set.of(container.getId()))
+				.exec().get(0);
+	}
+
+	/**
+	 * Host port of a published container port, e.g. assigned by docker for ports published without host port.
+	 *
+	 * @param container Running container.
+	 * @param port      Port inside container.
+	 * @return Host port, empty if port is not published.
+	 */
+	public Optional<Integer> getHostPort(Container container, int port) {
+		var bindings = client.inspectContainerCmd(container.getId()).exec().getNetworkSettings().getPorts()
+				.getBindings();
+		return Optional.ofNullable(bindings.get(ExposedPort.tcp(port))).stream()
+				.flatMap(Stream::of)
+				.map(Ports.Binding::getHostPortSpec)
+				.filter(spec -> spec != null && !spec.isEmpty())
+				.map(Integer::valueOf)
+				.findFirst();
+	}
+
 	public void remove(Container container) {
 		client.removeContainerCmd(container.getId()).withRemoveVolumes(true).withForce(true).exec();
 		log.debug("Container with id {} and name {} removed", container.getId(), container.getNames()[0]);
 	}
 
 	public void start(Container container) {
+		var timer = timings.start(Timings.CONTAINER, "start " + containerName);
 		client.startContainerCmd(container.getId()).exec();
+		timer.stop(true);
 		log.debug("Container {} and name {} started", container.getId(), container.getNames()[0]);
 	}
 
@@ -219,43 +384,247 @@ public class Docker {
 		return running;
 	}
 
-	public void waitForLog(Container container, Await await, Function<List<String>, Boolean> checker)
+	/**
+	 * Wait for a log line of the current start of the container. Lines of previous starts are ignored, e.g. after a
+	 * restart of a stopped container or for a snapshot.
+	 *
+	 * @param container Started container.
+	 * @param await     Await to use.
+	 * @param matcher   Matcher for log line without timestamp.
+	 */
+	public void waitForLog(Container container, Await await, Predicate<String> matcher)
 			throws MojoExecutionException {
-		var callback = new DockerLogCallback();
-		client.logContainerCmd(container.getId())
-				.withStdOut(true)
-				.withStdErr(true)
-				.withFollowStream(true)
-				.withSince(0)
-				.exec(callback);
-		await.onTimeout(callback::replayOnWarn).until(() -> checker.apply(callback.messages));
+		timings.time(Timings.WAIT, containerName + ": " + await.getText(), () -> {
+			var state = client.inspectContainerCmd(container.getId()).exec().getState();
+			var startedAt = Instant.parse(state.getStartedAt());
+			var callback = new DockerLogCallback(LOG_TAIL);
+			client.logContainerCmd(container.getId())
+					.withStdOut(true)
+					.withStdErr(true)
+					.withFollowStream(true)
+					.withTimestamps(true)
+					.withSince((int) startedAt.getEpochSecond())
+					.exec(callback);
+			Predicate<String> sinceStart = line -> {
+				// since is in seconds only, timestamps are used to skip lines of previous start in same second
+				var index = line.indexOf(' ');
+				try {
+					return index > 0
+							&& !Instant.parse(line.substring(0, index)).isBefore(startedAt)
+							&& matcher.test(line.substring(index + 1));
+				} catch (DateTimeParseException e) {
+					return false;
+				}
+			};
+			try {
+				await.onTimeout(callback::replayOnWarn).until(callback.until(sinceStart));
+			} finally {
+				try {
+					callback.close();
+				} catch (IOException e) {
+					log.debug("Failed to close log stream of container {}", container.getId(), e);
+				}
+			}
+			return null;
+		});
 	}
 
 	public void copyFromContainer(Container container, String source, Path destination) throws MojoExecutionException {
-		log.debug("Copy from container {} to host {}", source, destination);
-		try (var is = new TarArchiveInputStream(client.copyArchiveFromContainerCmd(container.getId(), source).exec())) {
-			ArchiveEntry entry = null;
-			while ((entry = is.getNextEntry()) != null) {
-				var extractTo = destination.resolve(entry.getName());
-				if (entry.isDirectory()) {
-					Files.createDirectories(extractTo);
-				} else {
-					Files.copy(is, extractTo, StandardCopyOption.REPLACE_EXISTING);
+		timings.time(Timings.COPY, containerName + ":" + source + " -> " + destination, () -> {
+			log.debug("Copy from container {} to host {}", source, destination);
+			try (var is = new TarArchiveInputStream(
+					client.copyArchiveFromContainerCmd(container.getId(), source).exec())) {
+				ArchiveEntry entry = null;
+				while ((entry = is.getNextEntry()) != null) {
+					var extractTo = destination.resolve(entry.getName());
+					if (entry.isDirectory()) {
+						Files.createDirectories(extractTo);
+					} else {
+						Files.copy(is, extractTo, StandardCopyOption.REPLACE_EXISTING);
+					}
 				}
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to copy file " + source + " to " + destination, e);
 			}
-		} catch (IOException e) {
-			throw new MojoExecutionException("Failed to copy file " + source + " to " + destination, e);
-		}
+			return null;
+		});
+	}
+
+	/**
+	 * Stream files of a directory from container with one <code>tar</code> exec. Symlinks are resolved inside the
+	 * container, e.g. for logs in <code>/var/log/containers</code>.
+	 *
+	 * @param container Container to copy files from.
+	 * @param source    Directory inside container.
+	 * @param timeout   Timeout for copy.
+	 * @param consumer  Consumer for every file, called with file name without directories.
+	 * @return Number of copied files
+	 */
+	public int copyFilesFromContainer(Container container, String source, Duration timeout, FileConsumer consumer)
+			throws MojoExecutionException {
+		return timings.time(Timings.COPY, containerName + ":" + source + " -> host", () -> {
+			log.debug("Copy files from container {}", source);
+			// callback is closed first if consumer fails, so docker stops writing into the pipe
+			var pipeOutput = new PipedOutputStream();
+			try (var pipeInput = new PipedInputStream(pipeOutput, PIPE_SIZE);
+					var callback = execAsync(container, new DockerLogCallback(pipeOutput),
+							"sh", "-c", "cd '" + source + "' && tar -chf - . 2>/dev/null")) {
+				callback.getCompletion().whenComplete((result, error) -> {
+					try {
+						pipeOutput.close();
+					} catch (IOException e) {
+						log.debug("Failed to close pipe", e);
+					}
+				});
+				var files = 0;
+				var tar = new TarArchiveInputStream(pipeInput);
+				var entry = tar.getNextEntry();
+				while (entry != null) {
+					var name = Path.of(entry.getName()).getFileName();
+					if (!entry.isDirectory() && name != null) {
+						consumer.accept(name.toString(), tar);
+						files++;
+					}
+					entry = tar.getNextEntry();
+				}
+				Await.await(log, "Copy files from " + source).timeout(timeout).until(callback.getCompletion());
+				return files;
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to copy files from " + source, e);
+			}
+		});
 	}
 
 	public void copyToContainer(Container container, Path source, String destination) throws MojoExecutionException {
-		log.debug("Copy from host {} to container {}", source, destination);
-		exec(container, "mkdir", "-p", destination.toString());
-		client.copyArchiveToContainerCmd(container.getId())
-				.withHostResource(source.toAbsolutePath().toString())
-				.withRemotePath(destination)
-				.withDirChildrenOnly(true)
-				.exec();
+		timings.time(Timings.COPY, source + " -> " + containerName + ":" + destination, () -> {
+			log.debug("Copy from host {} to container {}", source, destination);
+			var event = copyEvent(source.toString(), destination);
+			try {
+				copyTarToContainer(container,
+						output -> TarFilter.writeFiles(source, output, TarFilter.prefix(destination)));
+			} catch (IOException | CompletionException e) {
+				throw new MojoExecutionException("Failed to copy files from " + source + " to " + destination, e);
+			}
+			if (event.isEnabled()) {
+				event.bytes = size(source);
+				event.commit();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Copy only files changed since last sync to this container and delete files removed on host. Fingerprints of
+	 * copied files are kept in given index, all files are copied again if the container was recreated or restarted.
+	 *
+	 * @param container   Container to copy files into.
+	 * @param source      File or directory on host, children of directories are copied.
+	 * @param destination Directory inside container.
+	 * @param index       Index to use and update.
+	 */
+	public void syncToContainer(Container container, Path source, String destination, ContainerIndex index)
+			throws MojoExecutionException {
+		timings.time(Timings.COPY, source + " -> " + containerName + ":" + destination, () -> {
+
+			var key = containerName + ":" + destination;
+			var state = getContainerState(container);
+			var previous = index.get(key, state);
+			FileDelta delta;
+			try {
+				delta = FileDelta.of(source, previous);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to read files from " + source, e);
+			}
+			log.debug("Sync from host {} to container {}: {} of {} files changed, {} deleted", source, destination,
+					delta.changed().size(), delta.fingerprints().size(), delta.deleted().size());
+
+			if (!delta.changed().isEmpty() || previous.isEmpty()) {
+				var event = copyEvent(source.toString(), destination);
+				try {
+					event.bytes = copyTarToContainer(container,
+							output -> delta.writeTar(output, TarFilter.prefix(destination)));
+					event.commit();
+				} catch (IOException | CompletionException e) {
+					throw new MojoExecutionException("Failed to copy files from " + source + " to " + destination, e);
+				}
+			}
+			for (var i = 0; i < delta.deleted().size(); i += SYNC_DELETE_BATCH) {
+				var command = new ArrayList<>(List.of("rm", "-rf", "--"));
+				delta.deleted().subList(i, Math.min(i + SYNC_DELETE_BATCH, delta.deleted().size()))
+						.forEach(path -> command.add(destination + "/" + path));
+				exec(container, command.toArray(String[]::new));
+			}
+			index.put(key, state, delta.fingerprints());
+			return null;
+		});
+	}
+
+	/**
+	 * Stream <code>docker save</code> of given image into the container. The output of docker save is already a tar
+	 * archive, so it is streamed with entries prefixed by destination without touching the host filesystem.
+	 */
+	public void copyImageToContainer(Container container, Image image, String destination)
+			throws MojoExecutionException {
+		copyImageToContainer(container, image, destination, Set.of());
+	}
+
+	/**
+	 * Copy image from docker to container without blobs that are already present in containerd. Containerd imports
+	 * blobs from the archive into its content store, so blobs already in the store can be left out.
+	 *
+	 * @param container    Container to copy image into.
+	 * @param image        Image to copy.
+	 * @param destination  Directory inside container.
+	 * @param presentBlobs Digests of blobs to skip, see {@link #getCtrContent(Container)}.
+	 */
+	public void copyImageToContainer(Container container, Image image, String destination, Set<String> presentBlobs)
+			throws MojoExecutionException {
+		timings.time(Timings.COPY, image + " -> " + containerName + ":" + destination, () -> {
+			log.debug("Copy image {} from docker to container {}", image, destination);
+			var event = new Events.SaveImage();
+			event.container = containerName;
+			event.image = image.toString();
+			event.begin();
+			var started = System.nanoTime();
+			var skipped = new AtomicLong();
+			try (var stream = new Events.CountingInputStream(client.saveImageCmd(image.toString()).exec())) {
+				copyTarToContainer(container, output -> skipped
+						.set(TarFilter.skipBlobs(stream, output, TarFilter.prefix(destination), presentBlobs)));
+				commit(event, stream.getCount(), skipped.get(), started);
+				log.debug("Image {} copied, skipped {} bytes of blobs present in ctr", image, skipped.get());
+			} catch (IOException | CompletionException e) {
+				throw new MojoExecutionException("Failed to copy image " + image + " to container", e);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Stream tar into the root of the container. Entries need to be prefixed with their destination directory, see
+	 * {@link TarFilter#prefix(String)}, so no directories have to be created before.
+	 *
+	 * @param container Container to copy tar into.
+	 * @param writer    Writer of tar, called in another thread.
+	 * @return Number of bytes copied.
+	 */
+	private long copyTarToContainer(Container container, TarWriter writer) throws IOException {
+		try (var pipeInput = new PipedInputStream(PIPE_SIZE);
+				var pipeOutput = new PipedOutputStream(pipeInput);
+				var input = new Events.CountingInputStream(pipeInput)) {
+			var future = CompletableFuture.runAsync(() -> {
+				try (pipeOutput) {
+					writer.write(pipeOutput);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			client.copyArchiveToContainerCmd(container.getId())
+					.withTarInputStream(input)
+					.withRemotePath("/")
+					.exec();
+			future.join();
+			return input.getCount();
+		}
 	}
 
 	public List<String> exec(Container container, String... command) throws MojoExecutionException {
@@ -268,27 +637,216 @@ public class Docker {
 
 	public DockerExecResult execWithoutVerify(Container container, Duration timeout, String... command)
 			throws MojoExecutionException {
+		var text = Stream.of(command).collect(Collectors.joining(" "));
+		var timer = timings.start(Timings.EXEC, text);
+		var event = new Events.Exec();
+		event.container = containerName;
+		event.command = text;
+		event.begin();
+		var started = System.nanoTime();
+		Long exitCode = null;
+		try {
+			var execId = client.execCreateCmd(container.getId())
+					.withCmd(command)
+					.withAttachStdout(true)
+					.withAttachStderr(true)
+					.exec().getId();
+			event.createDuration = System.nanoTime() - started;
+			var logs = client.execStartCmd(execId).exec(new DockerLogCallback());
+			Await.await(log, text)
+					.timeout(timeout == null ? Duration.ofMinutes(30) : timeout)
+					.onTimeout(logs::replayOnWarn)
+					.until(logs.getCompletion());
+			exitCode = client.inspectExecCmd(execId).exec().getExitCodeLong();
+			event.exitCode = exitCode == null ? -1 : exitCode;
+			event.lines = logs.messages.size();
+			return new DockerExecResult(log, command, exitCode, logs.messages);
+		} finally {
+			event.commit();
+			timer.stop(exitCode != null && exitCode == 0);
+		}
+	}
+
+	/**
+	 * Start command in container without waiting for completion. Output is passed to given callback.
+	 *
+	 * @return Callback for chaining.
+	 */
+	public <T extends DockerLogCallback> T execAsync(Container container, T callback, String... command) {
 		var execId = client.execCreateCmd(container.getId())
 				.withCmd(command)
 				.withAttachStdout(true)
 				.withAttachStderr(true)
 				.exec().getId();
-		var logs = client.execStartCmd(execId).exec(new DockerLogCallback());
-		Await.await(log, Stream.of(command).collect(Collectors.joining(" ")))
-				.timeout(timeout == null ? Duration.ofMinutes(30) : timeout)
-				.onTimeout(logs::replayOnWarn)
-				.until(logs::isCompleted);
-		var exitCode = client.inspectExecCmd(execId).exec().getExitCodeLong();
-		return new DockerExecResult(log, command, exitCode, logs.messages);
+		return client.execStartCmd(execId).exec(callback);
 	}
 
 	/**
-	 * Read image from <code>ctr image list</code>.
+	 * Digests of all blobs in content store of containerd.
 	 *
-	 * @return Image name with labels.
+	 * @param container Container to query.
+	 * @return Digests, e.g. <code>sha256:abc...</code>
+	 */
+	public Set<String> getCtrContent(Container container) throws MojoExecutionException {
+		return exec(container, "ctr", "content", "list", "--quiet").stream()
+				.filter(digest -> digest.startsWith("sha256:"))
+				.collect(Collectors.toSet());
+	}
+
+	/**
+	 * Read images from <code>ctr image list</code>.
+	 *
+	 * @param container Container to query.
+	 * @return Image names with labels.
 	 */
 	public List<CtrImage> getCtrImages(Container container) throws MojoExecutionException {
-		return exec(container, "ctr", "image", "list").stream()
+		return parseCtrImages(exec(container, "ctr", "image", "list"));
+	}
+
+	/**
+	 * Get images of containerd from index or from <code>ctr image list</code> if index is outdated. Indexed images are
+	 * validated with the references of <code>ctr image list --quiet</code>, which is cheap compared to the full list
+	 * with labels. This exec is needed even if container id and start time are unchanged: image garbage collection of
+	 * kubelet or <code>crictl rmi</code> remove images of a running container, an import skipped because of outdated
+	 * rows would leave pods without image.
+	 *
+	 * @param container Container to query.
+	 * @param index     Index to use and update.
+	 * @return Images of containerd
+	 */
+	public List<CtrImage> getCtrImages(Container container, ImageIndex index) throws MojoExecutionException {
+		var state = getContainerState(container);
+		var rows = index.getCtrImages(containerName, state).orElse(null);
+		if (rows != null) {
+			var indexedRefs = rows.stream().filter(row -> !row.startsWith("REF"))
+					.map(row -> row.split("\\s+")[0]).collect(Collectors.toSet());
+			var refs = exec(container, "ctr", "image", "list", "--quiet").stream()
+					.filter(ref -> !ref.isBlank()).collect(Collectors.toSet());
+			if (refs.equals(indexedRefs)) {
+				log.debug("Use indexed ctr images of container {}", container.getId());
+				return parseCtrImages(rows);
+			}
+			log.debug("Indexed ctr images of container {} outdated", container.getId());
+		}
+		rows = exec(container, "ctr", "image", "list");
+		index.putCtrImages(containerName, state, rows);
+		return parseCtrImages(rows);
+	}
+
+	/**
+	 * Mark containerd images as changed, next call of {@link #getCtrImages(Container, ImageIndex)} will query ctr.
+	 *
+	 * @param index Index to update.
+	 */
+	public void invalidateCtrImages(ImageIndex index) {
+		index.removeCtrImages(containerName);
+	}
+
+	/**
+	 * Digests of kubernetes objects applied to container, empty if container was recreated or restarted.
+	 *
+	 * @param container Container to query.
+	 * @param index     Index to use.
+	 * @return Digests by object id
+	 */
+	public Map<String, String> getAppliedDigests(Container container, ContainerIndex index) {
+		return index.get(containerName, getContainerState(container));
+	}
+
+	/**
+	 * Add digests of kubernetes objects applied to container, digests of other objects are kept.
+	 *
+	 * @param container Container objects were applied to.
+	 * @param index     Index to update.
+	 * @param digests   Digests by object id.
+	 */
+	public void putAppliedDigests(Container container, ContainerIndex index, Map<String, String> digests) {
+		index.merge(containerName, getContainerState(container), digests);
+	}
+
+	private String getContainerState(Container container) {
+		return container.getId() + "@" + client.inspectContainerCmd(container.getId()).exec().getState().getStartedAt();
+	}
+
+	/**
+	 * Find image in docker using index. The index is dropped if docker reports image events since last validation.
+	 *
+	 * @param image Image to find.
+	 * @param index Index to use and update.
+	 * @return Image with digest if found.
+	 */
+	public Optional<Image> findImage(Image image, ImageIndex index) throws MojoExecutionException {
+		var indexed = index.getDockerImage(image);
+		if (indexed.isPresent()) {
+			log.trace("Image {} found in index as {}.", image, indexed.get());
+			return indexed;
+		}
+		var found = findImage(image);
+		index.putDockerImage(image, found);
+		return found;
+	}
+
+	/**
+	 * Validate docker images of index with docker image events since last validation.
+	 *
+	 * @param index Index to validate.
+	 */
+	public void validateImageIndex(ImageIndex index) throws MojoExecutionException {
+		var now = Instant.now().getEpochSecond();
+		var since = index.getDockerTimestamp().orElse(null);
+		if (since == null) {
+			index.validateDocker(now, false);
+			return;
+		}
+		var events = new AtomicInteger();
+		try {
+			client.eventsCmd()
+					.withSince(String.valueOf(since))
+					.withUntil(String.valueOf(now))
+					.withEventTypeFilter(EventType.IMAGE)
+					.exec(new ResultCallback.Adapter<Event>() {
+						@Override
+						public void onNext(Event event) {
+							log.trace("Docker image event: {}", event);
+							events.incrementAndGet();
+						}
+					})
+					.awaitCompletion(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while reading docker events", e);
+		}
+		log.debug("Docker reported {} image events since {}", events, since);
+		index.validateDocker(now, events.get() == 0);
+	}
+
+	private Events.Copy copyEvent(String source, String destination) {
+		var event = new Events.Copy();
+		event.container = containerName;
+		event.source = source;
+		event.destination = destination;
+		event.begin();
+		return event;
+	}
+
+	private static void commit(Events.SaveImage event, long bytes, long skipped, long started) {
+		var nanos = System.nanoTime() - started;
+		event.bytes = bytes;
+		event.skipped = skipped;
+		event.throughput = nanos > 0 ? (long) (bytes * 1_000_000_000D / nanos) : 0;
+		event.commit();
+	}
+
+	private static long size(Path path) {
+		try (var files = Files.walk(path)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+		} catch (IOException | UncheckedIOException e) {
+			return -1;
+		}
+	}
+
+	static List<CtrImage> parseCtrImages(List<String> rows) {
+		return rows.stream()
 				.filter(row -> !row.startsWith("REF"))
 				.map(row -> row.split("(\\s)+"))
 				.filter(parts -> {
@@ -304,4 +862,16 @@ public class Docker {
 				.peek(entry -> log.debug("Found ctr image: {}", entry))
 				.toList();
 	}
+
+	/** Consumer for files streamed from a container. */
+	@FunctionalInterface
+	public interface FileConsumer {
+		void accept(String name, InputStream input) throws IOException;
+	}
+
+	/** Writer for tar streamed into a container. */
+	@FunctionalInterface
+	private interface TarWriter {
+		void write(OutputStream output) throws IOException;
+	}
 }
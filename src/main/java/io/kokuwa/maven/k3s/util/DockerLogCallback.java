@@ -1,8 +1,12 @@
 package io.kokuwa.maven.k3s.util;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,12 +24,66 @@ public class DockerLogCallback implements ResultCallback<Frame> {
 
 	private static final Logger log = LoggerFactory.getLogger(DockerPullCallback.class);
 
-	public final List<String> messages = new ArrayList<>();
+	public final List<String> messages;
+	private final OutputStream sink;
 	private StringBuffer sb = new StringBuffer();
-	private boolean completed;
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+	private final CompletableFuture<Void> condition = new CompletableFuture<>();
+	private Predicate<String> matcher;
+	private Closeable stream;
+
+	/** Keep all messages. */
+	public DockerLogCallback() {
+		this.messages = new ArrayList<>();
+		this.sink = null;
+	}
+
+	/**
+	 * Keep only the last messages, e.g. for replay on timeout.
+	 *
+	 * @param capacity Number of messages to keep.
+	 */
+	public DockerLogCallback(int capacity) {
+		this.messages = new RingBuffer<>(capacity);
+		this.sink = null;
+	}
+
+	/**
+	 * Write frames as received to given stream, no messages are kept. Stream is not closed by this callback.
+	 *
+	 * @param sink Stream to write to.
+	 */
+	public DockerLogCallback(OutputStream sink) {
+		this.messages = List.of();
+		this.sink = sink;
+	}
 
 	public boolean isCompleted() {
-		return completed;
+		return completion.isDone();
+	}
+
+	/**
+	 * Future that completes if docker closed the stream. Completes exceptionally if the stream failed.
+	 *
+	 * @return Completion of stream.
+	 */
+	public CompletableFuture<Void> getCompletion() {
+		return completion;
+	}
+
+	/**
+	 * Future that completes as soon as a line matches. Every line is checked only once, the stream is closed on the
+	 * first match and following lines are not buffered anymore.
+	 *
+	 * @param newMatcher Matcher to evaluate on every received line.
+	 * @return Completion of condition.
+	 */
+	public synchronized CompletableFuture<Void> until(Predicate<String> newMatcher) {
+		this.matcher = newMatcher;
+		if (messages.stream().anyMatch(newMatcher)) {
+			match();
+		}
+		return condition;
 	}
 
 	public void replayOnWarn() {
@@ -35,10 +93,22 @@ public class DockerLogCallback implements ResultCallback<Frame> {
 	// methods
 
 	@Override
-	public void onStart(Closeable closeable) {}
+	public void onStart(Closeable closeable) {
+		this.stream = closeable;
+	}
 
 	@Override
 	public synchronized void onNext(Frame frame) {
+		if (sink != null) {
+			try {
+				sink.write(frame.getPayload());
+			} catch (IOException e) {
+				// sink is not read anymore, stop receiving frames
+				onError(e);
+				closeStream("Failed to close stream after write error");
+			}
+			return;
+		}
 		var text = new String(frame.getPayload());
 		if (text.endsWith("\n")) {
 			if (!sb.isEmpty()) {
@@ -52,23 +122,58 @@ public class DockerLogCallback implements ResultCallback<Frame> {
 	}
 
 	@Override
-	public void onError(Throwable throwable) {}
+	public void onError(Throwable throwable) {
+		completion.completeExceptionally(throwable);
+		condition.completeExceptionally(throwable);
+	}
 
 	@Override
-	public void onComplete() {
-		completed = true;
+	public synchronized void onComplete() {
 		line(sb.toString());
+		completion.complete(null);
+		condition.completeExceptionally(new IllegalStateException("Stream completed without matching condition"));
 	}
 
 	@Override
-	public void close() {}
+	public void close() throws IOException {
+		if (stream != null) {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Hook for subclasses to react on every line as soon as it arrives.
+	 *
+	 * @param line Stripped and non blank line.
+	 */
+	protected void onLine(String line) {}
+
+	private void match() {
+		condition.complete(null);
+		closeStream("Failed to close stream after match");
+	}
+
+	private void closeStream(String message) {
+		try {
+			close();
+		} catch (IOException e) {
+			log.debug(message, e);
+		}
+	}
 
 	private void line(String line) {
 		for (var tmp : line.split("\n")) {
+			if (matcher != null && condition.isDone()) {
+				return;
+			}
 			var strippedLine = tmp.strip();
 			if (!strippedLine.isBlank()) {
 				log.debug(strippedLine);
 				messages.add(strippedLine);
+				onLine(strippedLine);
+				if (matcher != null && matcher.test(strippedLine)) {
+					match();
+				}
 			}
 		}
 	}
@@ -1,6 +1,9 @@
 package io.kokuwa.maven.k3s.util;
 
 import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,22 +25,69 @@ public class DockerPullCallback implements ResultCallback<PullResponseItem> {
 	private static final Logger log = LoggerFactory.getLogger(DockerPullCallback.class);
 
 	private final Image image;
-	private boolean completed = false;
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+	private final Map<String, Layer> layers = new ConcurrentHashMap<>();
+	private final Events.Pull event = new Events.Pull();
+	private final Runnable onProgress;
 	private boolean success = false;
 	private PullResponseItem response;
 
 	DockerPullCallback(Image image) {
+		this(image, () -> {});
+	}
+
+	/**
+	 * @param image      Image to pull.
+	 * @param onProgress Called after progress of a layer was updated.
+	 */
+	DockerPullCallback(Image image, Runnable onProgress) {
 		this.image = image;
+		this.onProgress = onProgress;
+		this.event.image = image.toString();
+		this.event.begin();
+	}
+
+	public Image getImage() {
+		return image;
 	}
 
 	public boolean isCompleted() {
-		return completed;
+		return completion.isDone();
+	}
+
+	/**
+	 * Future that completes if pull is finished, check {@link #isSuccess()} for result.
+	 *
+	 * @return Completion of pull.
+	 */
+	public CompletableFuture<Void> getCompletion() {
+		return completion;
 	}
 
 	public boolean isSuccess() {
 		return success;
 	}
 
+	/** Bytes of layers downloaded so far. */
+	public long getDownloaded() {
+		return layers.values().stream().mapToLong(Layer::current).sum();
+	}
+
+	/** Bytes of layers to download, known only after docker started downloading a layer. */
+	public long getTotal() {
+		return layers.values().stream().mapToLong(Layer::total).sum();
+	}
+
+	/** Number of layers that are not present in docker and need to be downloaded. */
+	public int getLayers() {
+		return (int) layers.values().stream().filter(layer -> !layer.reused()).count();
+	}
+
+	/** Number of layers already present in docker. */
+	public int getReusedLayers() {
+		return (int) layers.values().stream().filter(Layer::reused).count();
+	}
+
 	// methods
 
 	@Override
@@ -51,11 +101,35 @@ public class DockerPullCallback implements ResultCallback<PullResponseItem> {
 		} else {
 			log.debug("Image {} has status {}", image, newResponse.getStatus());
 		}
+		event.updates++;
+		if (newResponse.getId() != null && newResponse.getStatus() != null) {
+			var id = newResponse.getId();
+			var progress = newResponse.getProgressDetail();
+			switch (newResponse.getStatus()) {
+				case "Already exists" -> layers.put(id, new Layer(0, 0, true));
+				case "Downloading" -> {
+					if (progress != null && progress.getCurrent() != null) {
+						var total = progress.getTotal() == null ? 0 : progress.getTotal();
+						layers.merge(id, new Layer(progress.getCurrent(), total, false), (old, layer) -> new Layer(
+								Math.max(old.current(), layer.current()), Math.max(old.total(), layer.total()), false));
+						onProgress.run();
+					}
+				}
+				case "Download complete" -> {
+					layers.computeIfPresent(id, (key, layer) -> new Layer(layer.total(), layer.total(), false));
+					onProgress.run();
+				}
+				default -> {
+				}
+			}
+		}
 	}
 
 	@Override
 	public void onError(Throwable throwable) {
 		log.error("Image {} failed to pull", image, throwable);
+		commit();
+		completion.complete(null);
 	}
 
 	@Override
@@ -64,9 +138,20 @@ public class DockerPullCallback implements ResultCallback<PullResponseItem> {
 			success = true;
 			log.info("Image {} pulled: {}", image, response.getStatus());
 		}
-		completed = true;
+		commit();
+		completion.complete(null);
+	}
+
+	private void commit() {
+		event.layers = getLayers();
+		event.downloaded = getDownloaded();
+		event.success = success;
+		event.commit();
 	}
 
 	@Override
 	public void close() {}
+
+	/** Progress of a single layer. */
+	private record Layer(long current, long total, boolean reused) {}
 }
@@ -0,0 +1,184 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for docker calls and waits, recorded with e.g.
+ * <code>MAVEN_OPTS=-XX:StartFlightRecording=filename=k3s.jfr</code>. Events are cheap if no recording is running.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+final class Events {
+
+	private Events() {}
+
+	@Name("io.kokuwa.maven.k3s.DockerExec")
+	@Label("Docker Exec")
+	@Description("Exec in container, duration includes create, start and waiting for completion.")
+	@Category({ "k3s", "Docker" })
+	@StackTrace(false)
+	static class Exec extends Event {
+
+		@Label("Container")
+		String container;
+
+		@Label("Command")
+		String command;
+
+		@Label("Create Duration")
+		@Timespan(Timespan.NANOSECONDS)
+		long createDuration;
+
+		@Label("Exit Code")
+		long exitCode = -1;
+
+		@Label("Output Lines")
+		int lines;
+	}
+
+	@Name("io.kokuwa.maven.k3s.DockerCopy")
+	@Label("Docker Copy")
+	@Description("Copy of a tar archive into container.")
+	@Category({ "k3s", "Docker" })
+	@StackTrace(false)
+	static class Copy extends Event {
+
+		@Label("Container")
+		String container;
+
+		@Label("Source")
+		String source;
+
+		@Label("Destination")
+		String destination;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("io.kokuwa.maven.k3s.DockerSaveImage")
+	@Label("Docker Save Image")
+	@Description("Image streamed from docker save into container.")
+	@Category({ "k3s", "Docker" })
+	@StackTrace(false)
+	static class SaveImage extends Event {
+
+		@Label("Container")
+		String container;
+
+		@Label("Image")
+		String image;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Throughput")
+		@DataAmount
+		@Frequency
+		long throughput;
+
+		@Label("Skipped Bytes")
+		@Description("Bytes of blobs already present in containerd, not copied into container.")
+		@DataAmount
+		long skipped;
+	}
+
+	@Name("io.kokuwa.maven.k3s.DockerPull")
+	@Label("Docker Pull")
+	@Description("Pull of an image by docker, with progress reported by docker.")
+	@Category({ "k3s", "Docker" })
+	@StackTrace(false)
+	static class Pull extends Event {
+
+		@Label("Image")
+		String image;
+
+		@Label("Layers")
+		int layers;
+
+		@Label("Downloaded")
+		@DataAmount
+		long downloaded;
+
+		@Label("Progress Updates")
+		int updates;
+
+		@Label("Success")
+		boolean success;
+	}
+
+	@Name("io.kokuwa.maven.k3s.Await")
+	@Label("Await")
+	@Description("Wait for a condition, polls and sleep time are zero if waiting on a future.")
+	@Category("k3s")
+	static class Await extends Event {
+
+		@Label("Text")
+		String text;
+
+		@Label("Polls")
+		int polls;
+
+		@Label("Sleep Time")
+		@Description("Time spent sleeping between polls.")
+		@Timespan(Timespan.MILLISECONDS)
+		long sleep;
+
+		@Label("Success")
+		boolean success;
+	}
+
+	/** Input stream counting read bytes. */
+	static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		CountingInputStream(InputStream input) {
+			super(input);
+		}
+
+		long getCount() {
+			return count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			var value = super.read();
+			if (value != -1) {
+				count++;
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			var read = super.read(buffer, offset, length);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long length) throws IOException {
+			var skipped = super.skip(length);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Files changed on host since last copy to a container. Files are fingerprinted by size, modified time and checksum,
+ * checksums are only calculated if size or modified time changed. Directories are included, so empty directories are
+ * copied and deleted too. Symbolic links are followed.
+ *
+ * @param root         Directory relative paths are resolved against.
+ * @param fingerprints Fingerprints of all current files by relative path.
+ * @param changed      Relative paths of new or changed files.
+ * @param deleted      Relative paths of files deleted since last copy.
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+record FileDelta(Path root, Map<String, String> fingerprints, List<String> changed, List<String> deleted) {
+
+	private static final String DIRECTORY = "directory";
+
+	/**
+	 * Compare files with fingerprints of last copy.
+	 *
+	 * @param source   File or directory to copy, children of directories are copied.
+	 * @param previous Fingerprints of last copy.
+	 * @return Delta
+	 */
+	static FileDelta of(Path source, Map<String, String> previous) throws IOException {
+		var absolute = source.toAbsolutePath();
+		var root = Files.isDirectory(absolute) ? absolute : absolute.getParent();
+		var fingerprints = new TreeMap<String, String>();
+		var changed = new ArrayList<String>();
+		try (Stream<Path> files = Files.walk(absolute, FileVisitOption.FOLLOW_LINKS)) {
+			for (var file : files.filter(file -> !file.equals(root)).sorted().toList()) {
+				var path = root.relativize(file).toString().replace('\\', '/');
+				if (Files.isDirectory(file)) {
+					if (!DIRECTORY.equals(previous.get(path))) {
+						changed.add(path);
+					}
+					fingerprints.put(path, DIRECTORY);
+					continue;
+				}
+				var attributes = Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis() + ":";
+				var fingerprint = previous.get(path);
+				if (fingerprint == null || !fingerprint.startsWith(attributes)) {
+					var checksum = Marker.adler32(file);
+					if (fingerprint == null || !fingerprint.endsWith(":" + checksum)) {
+						changed.add(path);
+					}
+					fingerprint = attributes + checksum;
+				}
+				fingerprints.put(path, fingerprint);
+			}
+		}
+		var deleted = previous.keySet().stream().filter(path -> !fingerprints.containsKey(path)).sorted().toList();
+		return new FileDelta(root, fingerprints, changed, deleted);
+	}
+
+	boolean isEmpty() {
+		return changed.isEmpty() && deleted.isEmpty();
+	}
+
+	/**
+	 * Write changed files as tar.
+	 *
+	 * @param output Stream to write to, finished but not closed.
+	 * @param prefix Prefix for entry names, see {@link TarFilter#prefix(String)}.
+	 */
+	void writeTar(OutputStream output, String prefix) throws IOException {
+		TarFilter.writeFiles(root, changed, output, prefix);
+	}
+}
@@ -0,0 +1,84 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Persistent index of images known to docker and containerd, shared by all modules of a reactor. Containerd images are
+ * valid as long as the k3s container was not restarted and <code>ctr image list --quiet</code> reports the same
+ * references, docker images as long as docker reports no image events.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class ImageIndex extends PropertiesIndex {
+
+	private static final String DOCKER_PREFIX = "docker.";
+	private static final String DOCKER_TIMESTAMP = "docker-timestamp";
+	private static final String CTR_PREFIX = "ctr.";
+
+	public ImageIndex(Path file) throws MojoExecutionException {
+		super(file);
+	}
+
+	/**
+	 * Timestamp of last validation of docker images.
+	 *
+	 * @return Epoch seconds, empty if docker images were never indexed.
+	 */
+	public synchronized Optional<Long> getDockerTimestamp() {
+		return Optional.ofNullable(getValue(DOCKER_TIMESTAMP)).map(Long::valueOf);
+	}
+
+	/**
+	 * Mark docker images as validated.
+	 *
+	 * @param timestamp Epoch seconds of validation.
+	 * @param valid     <code>false</code> if docker images changed since last validation.
+	 */
+	public synchronized void validateDocker(long timestamp, boolean valid) {
+		if (!valid) {
+			getKeys().stream().filter(key -> key.startsWith(DOCKER_PREFIX))
+					.forEach(this::removeValue);
+		}
+		setValue(DOCKER_TIMESTAMP, String.valueOf(timestamp));
+	}
+
+	public synchronized Optional<Image> getDockerImage(Image image) {
+		return Optional.ofNullable(getValue(DOCKER_PREFIX + image)).map(Image::of);
+	}
+
+	public synchronized void putDockerImage(Image image, Optional<Image> found) {
+		found.ifPresentOrElse(
+				f -> setValue(DOCKER_PREFIX + image, f.toString()),
+				() -> removeValue(DOCKER_PREFIX + image));
+	}
+
+	/**
+	 * Output of <code>ctr image list</code> for given container.
+	 *
+	 * @param name  Name of k3s container.
+	 * @param state State of container, e.g. id and start timestamp. Index is dropped if state changes.
+	 * @return Rows of output, empty if not indexed or container was recreated or restarted.
+	 */
+	public synchronized Optional<List<String>> getCtrImages(String name, String state) {
+		var value = getValue(CTR_PREFIX + name);
+		if (value == null || !value.startsWith(state + "\n")) {
+			return Optional.empty();
+		}
+		return Optional.of(Stream.of(value.substring(state.length() + 1).split("\n"))
+				.filter(row -> !row.isBlank()).toList());
+	}
+
+	public synchronized void putCtrImages(String name, String state, List<String> rows) {
+		setValue(CTR_PREFIX + name, state + "\n" + String.join("\n", rows));
+	}
+
+	public synchronized void removeCtrImages(String name) {
+		removeValue(CTR_PREFIX + name);
+	}
+}
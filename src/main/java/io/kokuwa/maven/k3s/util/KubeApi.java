@@ -0,0 +1,324 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Minimal client for the kubernetes api of k3s. Uses the kubeconfig written by run mojo and shares one HTTP/2
+ * connection for all requests, this avoids spawning kubectl inside the container for frequent checks. Only the
+ * kubeconfig format written by k3s is supported: first cluster and user with embedded certificates and EC key.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class KubeApi {
+
+	private static final Pattern KUBECONFIG = Pattern
+			.compile(
+					"^\\s*(server|certificate-authority-data|client-certificate-data|client-key-data):\\s*(\\S+)\\s*$");
+	private static final Map<String, String> RESOURCES = Map.of(
+			"statefulset", "/apis/apps/v1/%sstatefulsets",
+			"deployment", "/apis/apps/v1/%sdeployments",
+			"job", "/apis/batch/v1/%sjobs",
+			"pod", "/api/v1/%spods");
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+	private final URI server;
+	private final HttpClient client;
+
+	public KubeApi(Path kubeconfig) throws MojoExecutionException {
+
+		var values = new HashMap<String, String>();
+		try {
+			for (var line : Files.readAllLines(kubeconfig)) {
+				var matcher = KUBECONFIG.matcher(line);
+				if (matcher.matches()) {
+					values.putIfAbsent(matcher.group(1), matcher.group(2));
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to read kubeconfig " + kubeconfig, e);
+		}
+		for (var key : List.of("server", "certificate-authority-data", "client-certificate-data", "client-key-data")) {
+			if (!values.containsKey(key)) {
+				throw new MojoExecutionException("Kubeconfig " + kubeconfig + " has no " + key);
+			}
+		}
+
+		try {
+			this.server = URI.create(values.get("server"));
+			this.client = HttpClient.newBuilder()
+					.version(HttpClient.Version.HTTP_2)
+					.connectTimeout(Duration.ofSeconds(5))
+					.sslContext(sslContext(
+							decode(values.get("certificate-authority-data")),
+							decode(values.get("client-certificate-data")),
+							decode(values.get("client-key-data"))))
+					.build();
+		} catch (GeneralSecurityException | IOException | RuntimeException e) {
+			throw new MojoExecutionException("Failed to read credentials of kubeconfig " + kubeconfig, e);
+		}
+	}
+
+	public URI getServer() {
+		return server;
+	}
+
+	/**
+	 * Version of kubernetes api server, can be used to check connectivity.
+	 *
+	 * @return Git version, e.g. <code>v1.31.2+k3s1</code>
+	 */
+	public String getVersion() throws MojoExecutionException {
+		return get("/version").map(version -> version.path("gitVersion").asText())
+				.orElseThrow(() -> new MojoExecutionException("Kubernetes api has no version"));
+	}
+
+	public boolean hasServiceAccount(String namespace, String name) throws MojoExecutionException {
+		return get("/api/v1/namespaces/" + namespace + "/serviceaccounts/" + name).isPresent();
+	}
+
+	public boolean isNodeReady(String name) throws MojoExecutionException {
+		return get("/api/v1/nodes/" + name).map(KubeApi::isReady).orElse(false);
+	}
+
+	/**
+	 * Keys of all node taints with given effect.
+	 *
+	 * @param effect Effect of taints, e.g. <code>NoSchedule</code>.
+	 * @return Taint keys
+	 */
+	public List<String> getNodeTaints(String effect) throws MojoExecutionException {
+		return get("/api/v1/nodes").map(nodes -> taints(nodes, effect)).orElse(List.of());
+	}
+
+	/**
+	 * List resources of given kind.
+	 *
+	 * @param kind      Kind of resources, one of statefulset, deployment, job or pod.
+	 * @param namespace Namespace to list, <code>null</code> for all namespaces.
+	 * @return Namespace and name of resources
+	 */
+	public List<String[]> list(String kind, String namespace) throws MojoExecutionException {
+		var path = RESOURCES.get(kind);
+		if (path == null) {
+			throw new MojoExecutionException("Unsupported kind " + kind);
+		}
+		return get(path.formatted(namespace == null ? "" : "namespaces/" + namespace + "/"))
+				.map(KubeApi::names).orElse(List.of());
+	}
+
+	private Optional<JsonNode> get(String path) throws MojoExecutionException {
+		var request = HttpRequest.newBuilder(server.resolve(path))
+				.header("Accept", "application/json")
+				.timeout(TIMEOUT)
+				.GET().build();
+		try {
+			var response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+			if (response.statusCode() == 404) {
+				return Optional.empty();
+			}
+			if (response.statusCode() != 200) {
+				throw new MojoExecutionException("Kubernetes api returned " + response.statusCode() + " for " + path
+						+ ": " + new String(response.body(), StandardCharsets.UTF_8));
+			}
+			return Optional.of(MAPPER.readTree(response.body()));
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to request kubernetes api " + path + ": " + e.getMessage(), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while requesting kubernetes api " + path, e);
+		}
+	}
+
+	// json
+
+	static boolean isReady(JsonNode node) {
+		for (var condition : node.path("status").path("conditions")) {
+			if ("Ready".equals(condition.path("type").asText())) {
+				return "True".equals(condition.path("status").asText());
+			}
+		}
+		return false;
+	}
+
+	static List<String> taints(JsonNode nodes, String effect) {
+		var taints = new ArrayList<String>();
+		for (var node : nodes.path("items")) {
+			for (var taint : node.path("spec").path("taints")) {
+				if (effect.equals(taint.path("effect").asText())) {
+					taints.add(taint.path("key").asText());
+				}
+			}
+		}
+		return taints;
+	}
+
+	static List<String[]> names(JsonNode list) {
+		var names = new ArrayList<String[]>();
+		for (var item : list.path("items")) {
+			var metadata = item.path("metadata");
+			names.add(new String[] { metadata.path("namespace").asText(), metadata.path("name").asText() });
+		}
+		return names;
+	}
+
+	// credentials
+
+	private static byte[] decode(String base64) {
+		return Base64.getDecoder().decode(base64);
+	}
+
+	private static SSLContext sslContext(byte[] ca, byte[] certificate, byte[] key)
+			throws GeneralSecurityException, IOException {
+
+		var certificates = CertificateFactory.getInstance("X.509");
+		var password = new char[0];
+
+		var trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+		trustStore.load(null, null);
+		var i = 0;
+		for (var cert : certificates.generateCertificates(new ByteArrayInputStream(ca))) {
+			trustStore.setCertificateEntry("ca-" + i++, cert);
+		}
+		var trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagers.init(trustStore);
+
+		var keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+		keyStore.load(null, null);
+		keyStore.setKeyEntry("client", privateKey(new String(key, StandardCharsets.US_ASCII)), password,
+				certificates.generateCertificates(new ByteArrayInputStream(certificate))
+						.toArray(Certificate[]::new));
+		var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagers.init(keyStore, password);
+
+		var context = SSLContext.getInstance("TLS");
+		context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+		return context;
+	}
+
+	/**
+	 * Read private key from PEM. Only the format written by k3s is supported: EC keys in SEC1 format, these are
+	 * wrapped to PKCS8 because the JDK only reads PKCS8.
+	 *
+	 * @param pem Private key in PEM format.
+	 * @return Private key
+	 */
+	static PrivateKey privateKey(String pem) throws GeneralSecurityException {
+		var matcher = Pattern.compile("-----BEGIN ([A-Z ]+)-----([^-]+)-----END").matcher(pem);
+		if (!matcher.find()) {
+			throw new InvalidKeySpecException("No PEM encoded private key found");
+		}
+		if (!"EC PRIVATE KEY".equals(matcher.group(1))) {
+			throw new InvalidKeySpecException("Unsupported private key type " + matcher.group(1));
+		}
+		try {
+			var der = Base64.getMimeDecoder().decode(matcher.group(2));
+			return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(der(0x30,
+					der(0x02, new byte[] { 0 }),
+					der(0x30, der(0x06, 0x2A, 0x86, 0x48, 0xCE, 0x3D, 0x02, 0x01), ecCurve(der)),
+					der(0x04, der))));
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new InvalidKeySpecException("Malformed EC private key", e);
+		}
+	}
+
+	/**
+	 * Curve of SEC1 key: <code>SEQUENCE { INTEGER version, OCTET STRING key, [0] OID curve, ... }</code>
+	 *
+	 * @param sec1 DER encoded SEC1 key.
+	 * @return DER encoded curve OID
+	 */
+	private static byte[] ecCurve(byte[] sec1) throws InvalidKeySpecException {
+		var offset = contentOffset(sec1, 0);
+		offset = contentOffset(sec1, offset) + contentLength(sec1, offset);
+		offset = contentOffset(sec1, offset) + contentLength(sec1, offset);
+		if (offset >= sec1.length || sec1[offset] != (byte) 0xA0) {
+			throw new InvalidKeySpecException("EC private key without curve");
+		}
+		var start = contentOffset(sec1, offset);
+		var end = start + contentLength(sec1, offset);
+		var curve = new byte[end - start];
+		System.arraycopy(sec1, start, curve, 0, curve.length);
+		return curve;
+	}
+
+	private static int contentOffset(byte[] der, int offset) {
+		var length = der[offset + 1] & 0xFF;
+		return offset + 2 + (length < 0x80 ? 0 : length & 0x7F);
+	}
+
+	private static int contentLength(byte[] der, int offset) {
+		var length = der[offset + 1] & 0xFF;
+		if (length < 0x80) {
+			return length;
+		}
+		var value = 0;
+		for (var i = 0; i < (length & 0x7F); i++) {
+			value = value << 8 | der[offset + 2 + i] & 0xFF;
+		}
+		return value;
+	}
+
+	private static byte[] der(int tag, int... content) {
+		var bytes = new byte[content.length];
+		for (var i = 0; i < content.length; i++) {
+			bytes[i] = (byte) content[i];
+		}
+		return der(tag, bytes);
+	}
+
+	private static byte[] der(int tag, byte[]... contents) {
+		var content = new ByteArrayOutputStream();
+		for (var part : contents) {
+			content.writeBytes(part);
+		}
+		var output = new ByteArrayOutputStream();
+		output.write(tag);
+		if (content.size() < 0x80) {
+			output.write(content.size());
+		} else {
+			var length = BigInteger.valueOf(content.size()).toByteArray();
+			var skip = length[0] == 0 ? 1 : 0;
+			output.write(0x80 | length.length - skip);
+			output.write(length, skip, length.length - skip);
+		}
+		output.writeBytes(content.toByteArray());
+		return output.toByteArray();
+	}
+}
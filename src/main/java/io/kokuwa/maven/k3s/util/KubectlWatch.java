@@ -0,0 +1,169 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches all resources of one kind with a single <code>kubectl get --watch</code> and determines readiness of
+ * requested resources from the event stream.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class KubectlWatch extends DockerLogCallback {
+
+	private static final Logger log = LoggerFactory.getLogger(KubectlWatch.class);
+	private static final Map<String, String> COLUMNS = Map.of(
+			"deployment", ":.metadata.generation,:.status.observedGeneration,:.spec.replicas,"
+					+ ":.status.replicas,:.status.updatedReplicas,:.status.availableReplicas,"
+					+ ":.status.conditions[?(@.type==\"Progressing\")].reason",
+			"statefulset", ":.metadata.generation,:.status.observedGeneration,:.spec.updateStrategy.type,"
+					+ ":.spec.replicas,:.status.replicas,:.status.readyReplicas,"
+					+ ":.status.currentRevision,:.status.updateRevision",
+			"job", ":.status.conditions[?(@.type==\"Complete\")].status,"
+					+ ":.status.conditions[?(@.type==\"Failed\")].status",
+			"pod", ":.status.conditions[?(@.type==\"Ready\")].status");
+
+	private final Map<String, CompletableFuture<Boolean>> resources = new ConcurrentHashMap<>();
+	private final String kind;
+	private final int columns;
+	private final String namespace;
+	private final Duration timeout;
+
+	public KubectlWatch(String kind, Duration timeout) {
+		this(kind, null, timeout);
+	}
+
+	/**
+	 * Watch resources of one kind.
+	 *
+	 * @param kind      Kind of resources to watch.
+	 * @param namespace Namespace to watch, <code>null</code> for all namespaces.
+	 * @param timeout   Timeout for waiting on resources.
+	 */
+	public KubectlWatch(String kind, String namespace, Duration timeout) {
+		if (!COLUMNS.containsKey(kind)) {
+			throw new IllegalArgumentException("Kind " + kind + " not supported, supported: " + COLUMNS.keySet());
+		}
+		this.kind = kind;
+		this.columns = 2 + COLUMNS.get(kind).split(",:").length;
+		this.namespace = namespace;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Register resource to wait for. Needs to be called before command is executed.
+	 *
+	 * @return Future that completes with <code>true</code> if resource is ready and <code>false</code> if resource
+	 *         failed, watch ended or timeout was reached.
+	 */
+	public CompletableFuture<Boolean> waitFor(String namespace, String name) {
+		return resources.computeIfAbsent(namespace + "/" + name, key -> new CompletableFuture<Boolean>()
+				.completeOnTimeout(false, timeout.toSeconds(), TimeUnit.SECONDS));
+	}
+
+	public String[] command() {
+		return new String[] { "kubectl", "get", kind,
+				namespace == null ? "--all-namespaces" : "--namespace=" + namespace,
+				"--watch",
+				"--no-headers",
+				"--request-timeout=" + timeout.toSeconds() + "s",
+				"--output=custom-columns=:.metadata.namespace,:.metadata.name," + COLUMNS.get(kind) };
+	}
+
+	// methods
+
+	@Override
+	protected void onLine(String line) {
+		var columns = line.split("\\s+");
+		if (columns.length < this.columns) {
+			log.debug("Ignore watch output for {}: {}", kind, line);
+			return;
+		}
+		var future = resources.get(columns[0] + "/" + columns[1]);
+		if (future == null || future.isDone()) {
+			return;
+		}
+		isReady(kind, columns).ifPresent(future::complete);
+		if (resources.values().stream().allMatch(Future::isDone)) {
+			try {
+				close();
+			} catch (IOException e) {
+				log.debug("Failed to close watch for {}", kind, e);
+			}
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		super.onError(throwable);
+		resources.values().forEach(future -> future.complete(false));
+	}
+
+	@Override
+	public void onComplete() {
+		super.onComplete();
+		resources.values().forEach(future -> future.complete(false));
+	}
+
+	/**
+	 * Determine readiness from one line of watch output. Mirrors the checks of <code>kubectl rollout status</code>
+	 * and <code>kubectl wait</code>.
+	 *
+	 * @return <code>true</code> if ready, <code>false</code> if failed, empty if still pending
+	 */
+	static Optional<Boolean> isReady(String kind, String[] columns) {
+		switch (kind) {
+			case "deployment": {
+				var generation = toInt(columns[2]);
+				var observedGeneration = toInt(columns[3]);
+				var replicas = toInt(columns[4]);
+				var currentReplicas = toInt(columns[5]);
+				var updatedReplicas = toInt(columns[6]);
+				var availableReplicas = toInt(columns[7]);
+				if (observedGeneration >= generation && "ProgressDeadlineExceeded".equals(columns[8])) {
+					return Optional.of(false);
+				}
+				return observedGeneration >= generation
+						&& updatedReplicas >= replicas
+						&& currentReplicas <= updatedReplicas
+						&& availableReplicas >= updatedReplicas ? Optional.of(true) : Optional.empty();
+			}
+			case "statefulset": {
+				var generation = toInt(columns[2]);
+				var observedGeneration = toInt(columns[3]);
+				var replicas = toInt(columns[5]);
+				var currentReplicas = toInt(columns[6]);
+				var readyReplicas = toInt(columns[7]);
+				if ("OnDelete".equals(columns[4])) {
+					return observedGeneration >= generation && readyReplicas == currentReplicas
+							? Optional.of(true)
+							: Optional.empty();
+				}
+				return observedGeneration >= generation
+						&& readyReplicas >= replicas
+						&& columns[8].equals(columns[9]) ? Optional.of(true) : Optional.empty();
+			}
+			case "job":
+				return "True".equals(columns[2]) ? Optional.of(true)
+						: "True".equals(columns[3]) ? Optional.of(false) : Optional.empty();
+			case "pod":
+				return "True".equals(columns[2]) ? Optional.of(true) : Optional.empty();
+			default:
+				return Optional.empty();
+		}
+	}
+
+	private static int toInt(String value) {
+		return "<none>".equals(value) ? 0 : Integer.parseInt(value);
+	}
+}
@@ -0,0 +1,171 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Single kubernetes object of a manifest file. Objects are identified by api version, kind, namespace and name, this
+ * is used to apply only changed objects.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public record Manifest(String id, String kind, String namespace, String content) {
+
+	private static final Pattern SEPARATOR = Pattern.compile("(?m)^---([ \\t].*)?$");
+	private static final Pattern TOP_LEVEL = Pattern.compile("^(apiVersion|kind|metadata):\\s*(.*?)\\s*$");
+	private static final Pattern METADATA = Pattern.compile("^(\\s+)(name|namespace):\\s*(.*?)\\s*$");
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	public boolean isCustomResourceDefinition() {
+		return "CustomResourceDefinition".equals(kind);
+	}
+
+	public boolean isNamespace() {
+		return "Namespace".equals(kind);
+	}
+
+	/**
+	 * Digest of content, includes the namespace objects are applied to.
+	 *
+	 * @param defaultNamespace Namespace used for apply, can be <code>null</code>.
+	 * @return Digest with algorithm prefix, e.g. <code>sha256:abc</code>
+	 */
+	public String digest(String defaultNamespace) {
+		try {
+			var digest = MessageDigest.getInstance("SHA-256");
+			digest.update(String.valueOf(defaultNamespace).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			return "sha256:" + HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+
+	/**
+	 * Read all manifest files like <code>kubectl apply --recursive</code>: files with extension yaml, yml or json.
+	 *
+	 * @param directory        Directory with manifest files.
+	 * @param defaultNamespace Namespace for objects without namespace, can be <code>null</code>.
+	 * @return Manifests sorted by file path
+	 */
+	public static List<Manifest> read(Path directory, String defaultNamespace) throws MojoExecutionException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			var manifests = new ArrayList<Manifest>();
+			for (var file : files.filter(Files::isRegularFile)
+					.filter(f -> f.getFileName().toString().matches(".*\\.(yaml|yml|json)"))
+					.sorted().toList()) {
+				manifests.addAll(parse(Files.readString(file), defaultNamespace));
+			}
+			return manifests;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to read manifests from " + directory, e);
+		}
+	}
+
+	/**
+	 * Split manifest text into single objects, supports multi document yaml and json with lists.
+	 *
+	 * @param text             Content of manifest file.
+	 * @param defaultNamespace Namespace for objects without namespace, can be <code>null</code>.
+	 * @return Manifests in order of text
+	 */
+	public static List<Manifest> parse(String text, String defaultNamespace) throws MojoExecutionException {
+		var manifests = new ArrayList<Manifest>();
+		if (text.stripLeading().startsWith("{")) {
+			try {
+				json(MAPPER.readTree(text), defaultNamespace, manifests);
+			} catch (JsonProcessingException e) {
+				throw new MojoExecutionException("Failed to parse json manifest: " + e.getOriginalMessage(), e);
+			}
+			return manifests;
+		}
+		for (var document : SEPARATOR.split(text)) {
+			if (document.lines().allMatch(line -> line.isBlank() || line.stripLeading().startsWith("#"))) {
+				continue;
+			}
+			manifests.add(yaml(document.strip() + "\n", defaultNamespace));
+		}
+		return manifests;
+	}
+
+	private static void json(JsonNode node, String defaultNamespace, List<Manifest> manifests) {
+		if (node.path("kind").asText().endsWith("List") && node.has("items")) {
+			node.path("items").forEach(item -> json(item, defaultNamespace, manifests));
+			return;
+		}
+		var metadata = node.path("metadata");
+		manifests.add(of(node.path("apiVersion").asText(), node.path("kind").asText(),
+				metadata.path("namespace").asText(null), metadata.path("name").asText(), defaultNamespace,
+				node.toString() + "\n"));
+	}
+
+	private static Manifest yaml(String document, String defaultNamespace) {
+		String apiVersion = null;
+		String kind = null;
+		String namespace = null;
+		String name = null;
+		String metadataIndent = null;
+		var inMetadata = false;
+		for (var line : document.split("\n")) {
+			var topLevel = TOP_LEVEL.matcher(line);
+			if (topLevel.matches()) {
+				inMetadata = "metadata".equals(topLevel.group(1));
+				if ("apiVersion".equals(topLevel.group(1))) {
+					apiVersion = unquote(topLevel.group(2));
+				} else if ("kind".equals(topLevel.group(1))) {
+					kind = unquote(topLevel.group(2));
+				}
+				continue;
+			}
+			if (!line.isEmpty() && !Character.isWhitespace(line.charAt(0)) && !line.startsWith("#")) {
+				inMetadata = false;
+			}
+			var metadata = METADATA.matcher(line);
+			if (inMetadata && metadata.matches()) {
+				metadataIndent = metadataIndent == null ? metadata.group(1) : metadataIndent;
+				if (metadataIndent.equals(metadata.group(1))) {
+					if ("name".equals(metadata.group(2))) {
+						name = unquote(metadata.group(3));
+					} else {
+						namespace = unquote(metadata.group(3));
+					}
+				}
+			} else if (inMetadata && metadataIndent == null && !line.isBlank()) {
+				metadataIndent = line.substring(0, line.length() - line.stripLeading().length());
+			}
+		}
+		return of(apiVersion, kind, namespace, name, defaultNamespace, document);
+	}
+
+	private static Manifest of(String apiVersion, String kind, String namespace, String name,
+			String defaultNamespace, String content) {
+		var effectiveNamespace = namespace == null ? defaultNamespace : namespace;
+		var id = apiVersion + "/" + kind + "/" + (effectiveNamespace == null ? "" : effectiveNamespace) + "/" + name;
+		return new Manifest(id, kind, effectiveNamespace, content);
+	}
+
+	private static String unquote(String value) {
+		var stripped = value.replaceAll("\\s+#.*$", "");
+		if (stripped.length() >= 2 && (stripped.startsWith("\"") && stripped.endsWith("\"")
+				|| stripped.startsWith("'") && stripped.endsWith("'"))) {
+			return stripped.substring(1, stripped.length() - 1);
+		}
+		return stripped;
+	}
+}
@@ -2,8 +2,13 @@ package io.kokuwa.maven.k3s.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.zip.Adler32;
 
 import org.apache.maven.plugin.MojoExecutionException;
 
@@ -16,9 +21,33 @@ import org.apache.maven.plugin.MojoExecutionException;
 public class Marker {
 
 	private final Path startedMarker;
+	private final Path checksums;
+	private final Path applied;
+	private final Path copied;
 
 	public Marker(File directory) {
 		this.startedMarker = directory.toPath().resolve("started");
+		this.checksums = directory.toPath().resolve("checksums.properties");
+		this.applied = directory.toPath().resolve("applied.properties");
+		this.copied = directory.toPath().resolve("copied.properties");
+	}
+
+	/**
+	 * Read index of applied kubernetes objects, changes need to be written with {@link ContainerIndex#write()}.
+	 *
+	 * @return Apply index
+	 */
+	public ContainerIndex readApplyIndex() throws MojoExecutionException {
+		return new ContainerIndex(applied);
+	}
+
+	/**
+	 * Read index of files copied to containers, changes need to be written with {@link ContainerIndex#write()}.
+	 *
+	 * @return Copy index
+	 */
+	public ContainerIndex readCopyIndex() throws MojoExecutionException {
+		return new ContainerIndex(copied);
 	}
 
 	public void writeStarted() throws MojoExecutionException {
@@ -37,4 +66,58 @@ public class Marker {
 			throw new MojoExecutionException("Failed to delete marker at " + startedMarker, e);
 		}
 	}
+
+	/**
+	 * Calculate checksum of given file. Checksums are cached by path, size and last modified time, so unchanged files
+	 * are not read again.
+	 *
+	 * @param file File to calculate checksum for.
+	 * @return Checksum with algorithm prefix, e.g. <code>adler32:123</code>
+	 */
+	public String checksum(Path file) throws MojoExecutionException {
+		try {
+			var key = file.toAbsolutePath().toString();
+			var fingerprint = Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis() + ":";
+			var cached = readChecksums().getProperty(key);
+			if (cached != null && cached.startsWith(fingerprint)) {
+				return cached.substring(fingerprint.length());
+			}
+			var checksum = adler32(file);
+			writeChecksum(key, fingerprint + checksum);
+			return checksum;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to calculate checksum for " + file, e);
+		}
+	}
+
+	private synchronized Properties readChecksums() throws IOException {
+		var properties = new Properties();
+		if (Files.isRegularFile(checksums)) {
+			try (var reader = Files.newBufferedReader(checksums)) {
+				properties.load(reader);
+			}
+		}
+		return properties;
+	}
+
+	private synchronized void writeChecksum(String key, String value) throws IOException {
+		var properties = readChecksums();
+		properties.setProperty(key, value);
+		Files.createDirectories(checksums.getParent());
+		try (var writer = Files.newBufferedWriter(checksums)) {
+			properties.store(writer, null);
+		}
+	}
+
+	static String adler32(Path file) throws IOException {
+		var checksum = new Adler32();
+		try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			var buffer = ByteBuffer.allocateDirect(1024 * 1024);
+			while (channel.read(buffer) != -1) {
+				checksum.update(buffer.flip());
+				buffer.clear();
+			}
+		}
+		return "adler32:" + checksum.getValue();
+	}
 }
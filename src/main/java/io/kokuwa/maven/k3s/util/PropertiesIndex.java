@@ -0,0 +1,90 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Base for indices persisted as properties file. Only changed keys are written: the file is read again, merged with
+ * the changes and replaced atomically while holding a file lock, so modules of a parallel reactor keep the entries of
+ * each other.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+abstract class PropertiesIndex {
+
+	private final Path file;
+	private final Path lockFile;
+	private final Properties properties;
+	private final Map<String, Optional<String>> changes = new LinkedHashMap<>();
+
+	PropertiesIndex(Path file) throws MojoExecutionException {
+		this.file = file;
+		this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+		this.properties = read(file);
+	}
+
+	protected String getValue(String key) {
+		return properties.getProperty(key);
+	}
+
+	protected Set<String> getKeys() {
+		return properties.stringPropertyNames();
+	}
+
+	protected void setValue(String key, String value) {
+		properties.setProperty(key, value);
+		changes.put(key, Optional.of(value));
+	}
+
+	protected void removeValue(String key) {
+		properties.remove(key);
+		changes.put(key, Optional.empty());
+	}
+
+	/** Merge changes into file, entries written by others since reading are kept. */
+	public synchronized void write() throws MojoExecutionException {
+		SharedCluster.locked(lockFile, () -> {
+			var merged = read(file);
+			changes.forEach((key, value) -> value.ifPresentOrElse(
+					v -> merged.setProperty(key, v),
+					() -> merged.remove(key)));
+			var temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+			try {
+				try (var writer = Files.newBufferedWriter(temp)) {
+					merged.store(writer, null);
+				}
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to write index " + file, e);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+			properties.clear();
+			properties.putAll(merged);
+			changes.clear();
+			return null;
+		});
+	}
+
+	private static Properties read(Path file) throws MojoExecutionException {
+		var properties = new Properties();
+		if (Files.isRegularFile(file)) {
+			try (var reader = Files.newBufferedReader(file)) {
+				properties.load(reader);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to read index " + file, e);
+			}
+		}
+		return properties;
+	}
+}
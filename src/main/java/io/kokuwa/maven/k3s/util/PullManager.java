@@ -0,0 +1,187 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pulls docker images concurrently with a limit of concurrent pulls per registry. Every image is pulled at most once,
+ * requests for an image that is or was pulled share this pull, layers shared by different images are downloaded only
+ * once by the docker daemon. Progress of all running pulls is logged aggregated and throughput is summarized per
+ * registry.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class PullManager {
+
+	private static final Logger log = LoggerFactory.getLogger(PullManager.class);
+	private static final long PROGRESS_INTERVAL = Duration.ofSeconds(10).toNanos();
+
+	private final Puller puller;
+	private final int pullsPerRegistry;
+	private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<Void>> pulls = new ConcurrentHashMap<>();
+	private final Set<DockerPullCallback> running = ConcurrentHashMap.newKeySet();
+	private final Map<String, Registry> registries = new TreeMap<>();
+	private final AtomicLong lastProgress = new AtomicLong(System.nanoTime());
+	private final long started = System.nanoTime();
+
+	/**
+	 * @param docker           Docker to pull with.
+	 * @param pullsPerRegistry Maximum number of concurrent pulls per registry.
+	 */
+	public PullManager(Docker docker, int pullsPerRegistry) {
+		this(docker::pullImage, pullsPerRegistry);
+	}
+
+	/**
+	 * @param puller           Function to pull with, e.g. {@link Docker#pullImage(DockerPullCallback, Duration)}.
+	 * @param pullsPerRegistry Maximum number of concurrent pulls per registry.
+	 */
+	PullManager(Puller puller, int pullsPerRegistry) {
+		this.puller = puller;
+		this.pullsPerRegistry = Math.max(1, pullsPerRegistry);
+	}
+
+	/**
+	 * Pull image, waits for a free slot of the registry or for a running pull of the same image. Returns immediately
+	 * if the image was already pulled by this manager.
+	 *
+	 * @param image   Image to pull.
+	 * @param timeout Timeout for pull.
+	 */
+	public void pull(Image image, Duration timeout) throws MojoExecutionException {
+
+		var future = new CompletableFuture<Void>();
+		var shared = pulls.putIfAbsent(image.toString(), future);
+		if (shared != null) {
+			log.debug("Image {} is pulled by another request, waiting ...", image);
+			Await.await(log, "pull " + image).timeout(timeout).until(shared);
+			return;
+		}
+
+		try {
+			pullWithPermit(image, timeout);
+			future.complete(null);
+		} catch (MojoExecutionException e) {
+			// failed pulls are forgotten, so following requests retry
+			pulls.remove(image.toString(), future);
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Throughput per registry of all finished pulls.
+	 *
+	 * @return Lines with summary per registry
+	 */
+	public synchronized List<String> summary() {
+		var lines = new ArrayList<String>();
+		registries.forEach((name, registry) -> lines.add(String.format(Locale.ROOT,
+				"%s: %d images, %d layers (%d reused), %s in %.1fs, %s/s",
+				name, registry.images, registry.layers, registry.reused, bytes(registry.bytes),
+				registry.nanos() / 1_000_000_000D, bytes(registry.rate()))));
+		return lines;
+	}
+
+	private void pullWithPermit(Image image, Duration timeout) throws MojoExecutionException {
+		var semaphore = permits.computeIfAbsent(image.registry(), registry -> new Semaphore(pullsPerRegistry));
+		if (!semaphore.tryAcquire()) {
+			log.debug("Image {} waits for one of {} pulls from {}", image, pullsPerRegistry, image.registry());
+			try {
+				semaphore.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("Interrupted while waiting to pull " + image, e);
+			}
+		}
+
+		var callback = new DockerPullCallback(image, this::progress);
+		var start = System.nanoTime();
+		running.add(callback);
+		try {
+			puller.pull(callback, timeout);
+		} finally {
+			running.remove(callback);
+			semaphore.release();
+			synchronized (this) {
+				registries.computeIfAbsent(image.registry(), name -> new Registry()).add(callback, start);
+			}
+		}
+	}
+
+	/** Log aggregated progress of all running pulls, at most every {@link #PROGRESS_INTERVAL}. */
+	private void progress() {
+		var now = System.nanoTime();
+		var last = lastProgress.get();
+		if (now - last < PROGRESS_INTERVAL || !lastProgress.compareAndSet(last, now)) {
+			return;
+		}
+		var pulling = List.copyOf(running);
+		var downloaded = pulling.stream().mapToLong(DockerPullCallback::getDownloaded).sum();
+		var total = pulling.stream().mapToLong(DockerPullCallback::getTotal).sum();
+		long finished;
+		synchronized (this) {
+			finished = registries.values().stream().mapToLong(registry -> registry.bytes).sum();
+		}
+		log.info("Pulling {} images: {} of {}, {}/s", pulling.size(), bytes(downloaded), bytes(total),
+				bytes((long) ((finished + downloaded) * 1_000_000_000D / Math.max(1, now - started))));
+	}
+
+	static String bytes(long bytes) {
+		if (bytes < 1024) {
+			return bytes + " B";
+		}
+		var exponent = Math.min(4, (int) (Math.log(bytes) / Math.log(1024)));
+		return String.format(Locale.ROOT, "%.1f %siB", bytes / Math.pow(1024, exponent), "KMGT".charAt(exponent - 1));
+	}
+
+	/** Function to pull an image with given callback. */
+	@FunctionalInterface
+	interface Puller {
+		void pull(DockerPullCallback callback, Duration timeout) throws MojoExecutionException;
+	}
+
+	/** Statistics of finished pulls of one registry. */
+	private static class Registry {
+
+		private int images;
+		private int layers;
+		private int reused;
+		private long bytes;
+		private long firstStart = Long.MAX_VALUE;
+		private long lastEnd = Long.MIN_VALUE;
+
+		private void add(DockerPullCallback callback, long start) {
+			images++;
+			layers += callback.getLayers();
+			reused += callback.getReusedLayers();
+			bytes += callback.getDownloaded();
+			firstStart = Math.min(firstStart, start);
+			lastEnd = Math.max(lastEnd, System.nanoTime());
+		}
+
+		/** Wall time from first start to last finished pull, concurrent pulls are counted once. */
+		private long nanos() {
+			return Math.max(1, lastEnd - firstStart);
+		}
+
+		private long rate() {
+			return (long) (bytes * 1_000_000_000D / nanos());
+		}
+	}
+}
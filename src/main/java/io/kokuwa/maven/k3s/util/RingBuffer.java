@@ -0,0 +1,58 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * List with fixed capacity, adding an element to a full buffer overwrites the oldest element.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+class RingBuffer<T> extends AbstractList<T> {
+
+	private final Object[] elements;
+	private int start;
+	private int size;
+
+	RingBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+		}
+		this.elements = new Object[capacity];
+	}
+
+	@Override
+	public synchronized boolean add(T element) {
+		elements[(start + size) % elements.length] = element;
+		if (size == elements.length) {
+			start = (start + 1) % elements.length;
+		} else {
+			size++;
+		}
+		modCount++;
+		return true;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public synchronized T get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+		}
+		return (T) elements[(start + index) % elements.length];
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized void clear() {
+		Arrays.fill(elements, null);
+		start = 0;
+		size = 0;
+		modCount++;
+	}
+}
@@ -0,0 +1,96 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Executors for tasks of one mojo execution. Tasks that move data (docker save, ctr import, copy) and tasks that wait
+ * on k3s (rollout status, startup) are limited separately, so neither the docker socket nor slow waits starve the
+ * other category. Waiting tasks run on virtual threads if the JVM supports them (Java 21+), the plugin itself targets
+ * Java 17 and falls back to platform threads. Needs to be closed at end of mojo.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class Scheduler implements AutoCloseable {
+
+	private final ExecutorService io;
+	private final ExecutorService wait;
+
+	public Scheduler(int ioThreads, int waitThreads) {
+		this.io = Executors.newFixedThreadPool(Math.max(1, ioThreads), threadFactory("k3s-io-"));
+		this.wait = Executors.newFixedThreadPool(Math.max(1, waitThreads),
+				virtualThreadFactory("k3s-wait-").orElseGet(() -> threadFactory("k3s-wait-")));
+	}
+
+	/**
+	 * Execute tasks that transfer data.
+	 *
+	 * @param tasks Tasks to execute.
+	 * @return Futures of tasks, all done.
+	 */
+	public <T> List<Future<T>> invokeAllIo(Collection<? extends Callable<T>> tasks) throws MojoExecutionException {
+		return invokeAll(io, tasks);
+	}
+
+	/**
+	 * Execute tasks that mostly wait.
+	 *
+	 * @param tasks Tasks to execute.
+	 * @return Futures of tasks, all done.
+	 */
+	public <T> List<Future<T>> invokeAllWait(Collection<? extends Callable<T>> tasks) throws MojoExecutionException {
+		return invokeAll(wait, tasks);
+	}
+
+	@Override
+	public void close() {
+		io.shutdownNow();
+		wait.shutdownNow();
+	}
+
+	private static <T> List<Future<T>> invokeAll(ExecutorService executor, Collection<? extends Callable<T>> tasks)
+			throws MojoExecutionException {
+		try {
+			return executor.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for tasks", e);
+		}
+	}
+
+	/**
+	 * Factory for virtual threads, resolved with reflection because virtual threads are not available in Java 17.
+	 *
+	 * @param prefix Prefix for thread names.
+	 * @return Factory for virtual threads, empty if not supported by JVM.
+	 */
+	static Optional<ThreadFactory> virtualThreadFactory(String prefix) {
+		try {
+			var builderType = Class.forName("java.lang.Thread$Builder");
+			var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+			return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+		} catch (ReflectiveOperationException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static ThreadFactory threadFactory(String prefix) {
+		var counter = new AtomicInteger();
+		return runnable -> {
+			var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
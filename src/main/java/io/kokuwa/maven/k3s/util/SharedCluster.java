@@ -0,0 +1,159 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Bookkeeping for a k3s container that is shared by multiple modules of a reactor. Modules are registered in a file
+ * and all changes are guarded by a file lock, so parallel builds (<code>-T</code>) and other maven processes using
+ * the same directory are serialized.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class SharedCluster {
+
+	/** File locks are held by the JVM, threads of the same JVM need to be synchronized additionally. */
+	private static final Object MONITOR = new Object();
+
+	private final Path lockFile;
+	private final Path usersFile;
+	private final Path finishedFile;
+
+	public SharedCluster(File directory) {
+		this.lockFile = directory.toPath().resolve("lock");
+		this.usersFile = directory.toPath().resolve("users");
+		this.finishedFile = directory.toPath().resolve("finished");
+	}
+
+	/**
+	 * Execute callable while holding the lock.
+	 *
+	 * @param callable Callable to execute.
+	 * @return Result of callable.
+	 */
+	public <T> T locked(Callable<T> callable) throws MojoExecutionException {
+		return locked(lockFile, callable);
+	}
+
+	/**
+	 * Execute callable while holding a lock on given file, for threads of this JVM and other processes.
+	 *
+	 * @param lockFile File to lock.
+	 * @param callable Callable to execute.
+	 * @return Result of callable.
+	 */
+	static <T> T locked(Path lockFile, Callable<T> callable) throws MojoExecutionException {
+		synchronized (MONITOR) {
+			try {
+				Files.createDirectories(lockFile.getParent());
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to create directory for " + lockFile, e);
+			}
+			try (var channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				var lock = channel.lock();
+				try {
+					return callable.call();
+				} finally {
+					lock.release();
+				}
+			} catch (MojoExecutionException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new MojoExecutionException("Failed to execute with lock " + lockFile, e);
+			}
+		}
+	}
+
+	/**
+	 * Register module as user of the cluster. Needs to be called with lock.
+	 *
+	 * @param module Module to register.
+	 * @return Number of other modules that use this cluster.
+	 */
+	public int attach(String module) throws MojoExecutionException {
+		var users = readUsers();
+		users.remove(module);
+		var others = users.size();
+		users.add(module);
+		writeUsers(users);
+		return others;
+	}
+
+	/**
+	 * Unregister module as user of the cluster. Needs to be called with lock.
+	 *
+	 * @param module Module to unregister.
+	 * @return Number of modules that still use this cluster.
+	 */
+	public int detach(String module) throws MojoExecutionException {
+		var users = readUsers();
+		users.remove(module);
+		writeUsers(users);
+		return users.size();
+	}
+
+	/**
+	 * Mark module as finished for the current build, so the cluster can be removed as soon as all modules of the build
+	 * that remove the cluster have finished. Marks of other builds are dropped. Needs to be called with lock.
+	 *
+	 * @param build  Identifier of the current build, e.g. start time of maven session.
+	 * @param module Module that finished.
+	 * @return Modules that finished in this build.
+	 */
+	public Set<String> finish(String build, String module) throws MojoExecutionException {
+		try {
+			var lines = Files.isRegularFile(finishedFile) ? Files.readAllLines(finishedFile) : List.<String>of();
+			var modules = new TreeSet<String>();
+			if (!lines.isEmpty() && lines.get(0).equals(build)) {
+				modules.addAll(lines.subList(1, lines.size()));
+			}
+			modules.add(module);
+			var content = new ArrayList<String>();
+			content.add(build);
+			content.addAll(modules);
+			Files.createDirectories(finishedFile.getParent());
+			Files.write(finishedFile, content);
+			return modules;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to update " + finishedFile, e);
+		}
+	}
+
+	/**
+	 * Remove all registered modules, e.g. leftovers of aborted builds if a new cluster is started. Finished modules
+	 * are kept, a cluster started by a module of the current build is removed by the last finishing module. Needs to
+	 * be called with lock.
+	 */
+	public void reset() throws MojoExecutionException {
+		writeUsers(List.of());
+	}
+
+	private List<String> readUsers() throws MojoExecutionException {
+		try {
+			return Files.isRegularFile(usersFile) ? new ArrayList<>(Files.readAllLines(usersFile)) : new ArrayList<>();
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to read " + usersFile, e);
+		}
+	}
+
+	private void writeUsers(List<String> users) throws MojoExecutionException {
+		try {
+			Files.createDirectories(usersFile.getParent());
+			Files.write(usersFile, users);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to write " + usersFile, e);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+/**
+ * Writes and filters tar streams for copies into containers. Entries are prefixed with the destination directory, so
+ * archives are extracted at the container root and docker creates missing directories while extracting.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+class TarFilter {
+
+	private static final String BLOBS = "blobs/sha256/";
+
+	private TarFilter() {}
+
+	/**
+	 * Prefix for entries that should be extracted into given directory at the container root.
+	 *
+	 * @param destination Absolute directory inside container, e.g. <code>/tmp/images</code>.
+	 * @return Prefix for entry names, e.g. <code>tmp/images/</code>.
+	 */
+	static String prefix(String destination) {
+		var prefix = destination.replaceAll("^/+|/+$", "");
+		return prefix.isEmpty() ? "" : prefix + "/";
+	}
+
+	/**
+	 * Copy tar and skip all blobs with given digests. Other entries, e.g. <code>index.json</code> or layers of the
+	 * legacy docker format, are always copied.
+	 *
+	 * @param input   Tar to read, not closed.
+	 * @param output  Tar to write, finished but not closed.
+	 * @param digests Digests of blobs to skip, e.g. <code>sha256:abc...</code>.
+	 * @return Number of bytes skipped.
+	 */
+	static long skipBlobs(InputStream input, OutputStream output, Set<String> digests) throws IOException {
+		return skipBlobs(input, output, "", digests);
+	}
+
+	/**
+	 * Copy tar with prefixed entry names and skip all blobs with given digests.
+	 *
+	 * @param input   Tar to read, not closed.
+	 * @param output  Tar to write, finished but not closed.
+	 * @param prefix  Prefix for entry names, see {@link #prefix(String)}.
+	 * @param digests Digests of blobs to skip, e.g. <code>sha256:abc...</code>.
+	 * @return Number of bytes skipped.
+	 */
+	static long skipBlobs(InputStream input, OutputStream output, String prefix, Set<String> digests)
+			throws IOException {
+		var skipped = 0L;
+		var tarInput = new TarArchiveInputStream(input);
+		var tarOutput = newOutput(output);
+		var entry = tarInput.getNextEntry();
+		while (entry != null) {
+			var name = entry.getName();
+			if (name.startsWith(BLOBS) && digests.contains("sha256:" + name.substring(BLOBS.length()))) {
+				skipped += entry.getSize();
+			} else {
+				entry.setName(prefix + name);
+				tarOutput.putArchiveEntry(entry);
+				tarInput.transferTo(tarOutput);
+				tarOutput.closeArchiveEntry();
+			}
+			entry = tarInput.getNextEntry();
+		}
+		tarOutput.finish();
+		return skipped;
+	}
+
+	/**
+	 * Write file or children of directory as tar. Symbolic links are followed and directories are written, so empty
+	 * directories are created in the container too.
+	 *
+	 * @param source File or directory on host, children of directories are written.
+	 * @param output Tar to write, finished but not closed.
+	 * @param prefix Prefix for entry names, see {@link #prefix(String)}.
+	 */
+	static void writeFiles(Path source, OutputStream output, String prefix) throws IOException {
+		var absolute = source.toAbsolutePath();
+		var root = Files.isDirectory(absolute) ? absolute : absolute.getParent();
+		try (Stream<Path> files = Files.walk(absolute, FileVisitOption.FOLLOW_LINKS)) {
+			var paths = files.filter(file -> !file.equals(root)).sorted()
+					.map(file -> root.relativize(file).toString().replace('\\', '/'))
+					.toList();
+			writeFiles(root, paths, output, prefix);
+		}
+	}
+
+	/**
+	 * Write given files as tar. The destination directory is always written, so it exists even without files.
+	 *
+	 * @param root   Directory relative paths are resolved against.
+	 * @param paths  Relative paths of files and directories to write.
+	 * @param output Tar to write, finished but not closed.
+	 * @param prefix Prefix for entry names, see {@link #prefix(String)}.
+	 */
+	static void writeFiles(Path root, Collection<String> paths, OutputStream output, String prefix)
+			throws IOException {
+		var tar = newOutput(output);
+		if (!prefix.isEmpty()) {
+			tar.putArchiveEntry(new TarArchiveEntry(prefix));
+			tar.closeArchiveEntry();
+		}
+		for (var path : paths) {
+			var file = root.resolve(path);
+			tar.putArchiveEntry(new TarArchiveEntry(file, prefix + path));
+			if (!Files.isDirectory(file)) {
+				Files.copy(file, tar);
+			}
+			tar.closeArchiveEntry();
+		}
+		tar.finish();
+	}
+
+	private static TarArchiveOutputStream newOutput(OutputStream output) {
+		var tar = new TarArchiveOutputStream(output);
+		tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+		tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+		return tar;
+	}
+}
@@ -0,0 +1,199 @@
+package io.kokuwa.maven.k3s.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Timed spans of a mojo execution, e.g. per exec, per image or per waited resource. Spans are written as json report
+ * and summarized per category in the log. Spans can be recorded concurrently.
+ *
+ * @author stephan@schnabel.org
+ * @since 2.3.2
+ */
+public class Timings {
+
+	public static final String MOJO = "mojo";
+	public static final String CONTAINER = "container";
+	public static final String EXEC = "exec";
+	public static final String COPY = "copy";
+	public static final String PULL = "pull";
+	public static final String IMAGE = "image";
+	public static final String WAIT = "wait";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final int MAX_NAME_LENGTH = 120;
+
+	private final String mojo;
+	private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * @param mojo Name of mojo, used to distinguish spans of different mojos in report.
+	 */
+	public Timings(String mojo) {
+		this.mojo = mojo;
+	}
+
+	public List<Span> getSpans() {
+		return List.copyOf(spans);
+	}
+
+	/** Remove all recorded spans, e.g. after writing the report. */
+	public void clear() {
+		spans.clear();
+	}
+
+	/**
+	 * Start span, needs to be stopped with {@link Timer#stop(boolean)}.
+	 *
+	 * @param category Category, e.g. {@link #EXEC}.
+	 * @param name     Name of span, e.g. command or image. Long names are truncated to first line.
+	 * @return Running timer
+	 */
+	public Timer start(String category, String name) {
+		return new Timer(category, name(name), Instant.now(), System.nanoTime());
+	}
+
+	/**
+	 * Execute task and record span, failed if task throws an exception.
+	 *
+	 * @param category Category, e.g. {@link #EXEC}.
+	 * @param name     Name of span, e.g. command or image.
+	 * @param task     Task to execute.
+	 * @return Result of task
+	 */
+	public <T> T time(String category, String name, Task<T> task) throws MojoExecutionException {
+		var timer = start(category, name);
+		var success = false;
+		try {
+			var result = task.call();
+			success = true;
+			return result;
+		} finally {
+			timer.stop(success);
+		}
+	}
+
+	/**
+	 * Summary per category, ordered by total duration.
+	 *
+	 * @return Lines of summary table
+	 */
+	public List<String> summary() {
+		var lines = new ArrayList<String>();
+		lines.add(String.format("%-10s %6s %10s %10s  %s", "category", "count", "total", "max", "slowest"));
+		spans.stream()
+				.filter(span -> !MOJO.equals(span.category()))
+				.collect(Collectors.groupingBy(Span::category, TreeMap::new, Collectors.toList()))
+				.entrySet().stream()
+				.sorted(Comparator.comparing((Map.Entry<String, List<Span>> e) -> e.getValue().stream()
+						.mapToLong(Span::millis).sum()).reversed())
+				.forEach(entry -> {
+					var slowest = entry.getValue().stream().max(Comparator.comparing(Span::millis)).get();
+					lines.add(String.format("%-10s %6d %10s %10s  %s",
+							entry.getKey(),
+							entry.getValue().size(),
+							format(entry.getValue().stream().mapToLong(Span::millis).sum()),
+							format(slowest.millis()),
+							slowest.name()));
+				});
+		spans.stream().filter(span -> MOJO.equals(span.category())).forEach(span -> lines
+				.add(String.format("%-10s %6d %10s %10s  %s", MOJO, 1, format(span.millis()), "", span.name())));
+		return lines;
+	}
+
+	/**
+	 * Write spans to json report. Spans of other mojos of the same build are kept, spans of previous builds are
+	 * replaced.
+	 *
+	 * @param file  Report file, e.g. <code>target/k3s/timings.json</code>.
+	 * @param build Identifier of the current build, e.g. start time of maven session.
+	 */
+	public void write(Path file, String build) throws MojoExecutionException {
+		synchronized (Timings.class) {
+			try {
+				var report = MAPPER.createObjectNode();
+				if (Files.isRegularFile(file)) {
+					var existing = MAPPER.readTree(file.toFile());
+					if (existing instanceof ObjectNode node && build.equals(node.path("build").asText())) {
+						report = node;
+					}
+				}
+				report.put("build", build);
+				var array = report.withArray("spans");
+				for (var span : spans) {
+					array.addObject()
+							.put("mojo", mojo)
+							.put("category", span.category())
+							.put("name", span.name())
+							.put("start", span.start().toString())
+							.put("millis", span.millis())
+							.put("success", span.success());
+				}
+				Files.createDirectories(file.toAbsolutePath().getParent());
+				MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+			} catch (IOException e) {
+				throw new MojoExecutionException("Failed to write timings to " + file, e);
+			}
+		}
+	}
+
+	private static String name(String name) {
+		var line = String.valueOf(name).strip().lines().findFirst().orElse("");
+		return line.length() > MAX_NAME_LENGTH ? line.substring(0, MAX_NAME_LENGTH) + "..." : line;
+	}
+
+	private static String format(long millis) {
+		return millis < 1000 ? millis + "ms" : String.format(Locale.ROOT, "%.1fs", millis / 1000D);
+	}
+
+	/** Span that is running. */
+	public final class Timer {
+
+		private final String category;
+		private final String name;
+		private final Instant start;
+		private final long nanos;
+
+		private Timer(String category, String name, Instant start, long nanos) {
+			this.category = category;
+			this.name = name;
+			this.start = start;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * Stop timer and record span.
+		 *
+		 * @param success <code>false</code> if timed operation failed.
+		 */
+		public void stop(boolean success) {
+			var millis = Duration.ofNanos(System.nanoTime() - nanos).toMillis();
+			spans.add(new Span(category, name, start, millis, success));
+		}
+	}
+
+	/** Recorded span. */
+	public record Span(String category, String name, Instant start, long millis, boolean success) {}
+
+	/** Task to time. */
+	@FunctionalInterface
+	public interface Task<T> {
+		T call() throws MojoExecutionException;
+	}
+}
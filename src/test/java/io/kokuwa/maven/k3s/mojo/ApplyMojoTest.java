@@ -64,6 +64,19 @@ public class ApplyMojoTest extends AbstractTest {
 		assertFalse(LoggerCapturer.getMessages().contains("WARN This may cause issues!"), "No taint expected.");
 	}
 
+	@DisplayName("with crd from subdir and incremental apply")
+	@Test
+	void withCrdIncremental(RunMojo runMojo, ApplyMojo applyMojo) {
+		applyMojo.setSubdir("crd");
+		applyMojo.setIncremental(true);
+		assertDoesNotThrow(runMojo::execute);
+		assertDoesNotThrow(applyMojo::execute);
+		assertDoesNotThrow(applyMojo::execute);
+		assertTrue(LoggerCapturer.getMessages().stream()
+				.anyMatch(m -> m.matches("INFO .*ApplyMojo - All [0-9]+ objects unchanged, skip apply")),
+				"Log message not found: \n" + LoggerCapturer.getMessages().stream().collect(Collectors.joining("\n")));
+	}
+
 	@DisplayName("with namespace")
 	@Test
 	void withNamespace(RunMojo runMojo, ApplyMojo applyMojo) {
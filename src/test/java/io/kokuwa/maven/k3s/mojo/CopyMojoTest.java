@@ -5,7 +5,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -74,4 +79,27 @@ public class CopyMojoTest extends AbstractTest {
 		assertDoesNotThrow(copyMojo::execute);
 		exec("test", "-f", "/tmp/pom.xml");
 	}
+
+	@DisplayName("sync dir")
+	@Test
+	void syncDir(RunMojo runMojo, CopyMojo copyMojo) throws MojoExecutionException, IOException {
+		var source = Path.of("target", "copy-sync");
+		FileUtils.deleteDirectory(source.toFile());
+		Files.createDirectories(source.resolve("sub"));
+		Files.writeString(source.resolve("a.yaml"), "a");
+		Files.writeString(source.resolve("sub/b.yaml"), "b");
+		copyMojo.setCopySource(source.toFile());
+		copyMojo.setCopyTarget(new File("/sync"));
+		copyMojo.setSync(true);
+		assertDoesNotThrow(runMojo::execute);
+		assertDoesNotThrow(copyMojo::execute);
+		exec("test", "-f", "/sync/a.yaml");
+		exec("test", "-f", "/sync/sub/b.yaml");
+
+		Files.delete(source.resolve("a.yaml"));
+		Files.writeString(source.resolve("sub/b.yaml"), "changed");
+		assertDoesNotThrow(copyMojo::execute);
+		exec("test", "!", "-f", "/sync/a.yaml");
+		assertEquals(List.of("changed"), exec("cat", "/sync/sub/b.yaml"));
+	}
 }
@@ -10,7 +10,11 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.jupiter.api.BeforeEach;
@@ -93,4 +97,28 @@ public class DebugMojoTest extends AbstractTest {
 		assertTrue(logName.startsWith("echo_default_echo-"), "unexpected container: " + logName);
 		assertTrue(logText.contains("Z stdout F Echo server listening on port 8080."), "log not found: " + logText);
 	}
+
+	@DisplayName("with debug bundle")
+	@Test
+	void withBundle(RunMojo runMojo, ApplyMojo applyMojo, DebugMojo debugMojo) throws IOException {
+		debugMojo.setDebugBundle(true);
+		debugMojo.setDebugToStdout(true);
+		debugMojo.setDebugStdoutLines(10);
+		assertDoesNotThrow(runMojo::execute);
+		assertDoesNotThrow(applyMojo::execute);
+		assertDoesNotThrow(debugMojo::execute);
+
+		assertTrue(Files.isRegularFile(output.resolve("k3s-debug.tar.gz")), "k3s-debug.tar.gz not found");
+		assertFalse(Files.exists(output.resolve("k3s.log")), "k3s.log not expected");
+		var names = new ArrayList<String>();
+		try (var tar = new TarArchiveInputStream(new GZIPInputStream(
+				Files.newInputStream(output.resolve("k3s-debug.tar.gz"))))) {
+			for (var entry = tar.getNextEntry(); entry != null; entry = tar.getNextEntry()) {
+				names.add(entry.getName());
+			}
+		}
+		assertTrue(names.containsAll(List.of("k3s.log", "k3s.yaml", "index.tsv")), "entries: " + names);
+		assertTrue(names.stream().anyMatch(name -> name.startsWith("containers/echo_default_echo-")),
+				"entries: " + names);
+	}
 }
@@ -1,13 +1,25 @@
 package io.kokuwa.maven.k3s.mojo;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
 
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystemSession;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -80,4 +92,89 @@ public class RemoveMojoTest extends AbstractTest {
 		assertFalse(docker.isVolumePresent());
 		assertFalse(Files.exists(k8s), "kubeconfig found");
 	}
+
+	@DisplayName("with shared container")
+	@Test
+	void withSharedContainer(RunMojo runMojo, RemoveMojo removeMojo, MavenProject project) {
+		project.setGroupId("io.kokuwa.maven");
+		project.setArtifactId("k3s-maven-plugin-test");
+		runMojo.setShared(true);
+		removeMojo.setShared(true);
+		assertDoesNotThrow(() -> runMojo.getSharedCluster().locked(() -> {
+			runMojo.getSharedCluster().reset();
+			return runMojo.getSharedCluster().attach("io.kokuwa.maven:other");
+		}));
+
+		// other module still uses container
+
+		assertDoesNotThrow(runMojo::execute);
+		assertDoesNotThrow(removeMojo::execute);
+		assertTrue(docker.getContainer().isPresent(), "container removed while used by other module");
+		assertFalse(Files.exists(kubeconfig), "kubeconfig found");
+
+		// last module removes container
+
+		assertDoesNotThrow(() -> removeMojo.getSharedCluster().locked(() -> {
+			return removeMojo.getSharedCluster().detach("io.kokuwa.maven:other");
+		}));
+		assertDoesNotThrow(runMojo::execute);
+		assertDoesNotThrow(removeMojo::execute);
+		assertFalse(docker.getContainer().isPresent(), "container not removed by last module");
+	}
+
+	@DisplayName("with shared container and session that ends with module without plugin")
+	@Test
+	void withSharedContainerAndSession(RunMojo runMojo, RemoveMojo removeMojo, MavenProject project) {
+		project.setGroupId("io.kokuwa.maven");
+		project.setArtifactId("k3s-maven-plugin-test");
+		var request = new DefaultMavenExecutionRequest().setStartTime(new Date()).setGoals(List.of("verify"));
+		var session = new MavenSession(null, (RepositorySystemSession) null, request,
+				new DefaultMavenExecutionResult());
+		session.setProjects(List.of(
+				project("other", true),
+				project("k3s-maven-plugin-test", true),
+				project("aggregator", false)));
+		runMojo.setShared(true);
+		removeMojo.setShared(true);
+		removeMojo.setSession(session);
+		assertEquals(Set.of("io.kokuwa.maven:other", "io.kokuwa.maven:k3s-maven-plugin-test"),
+				removeMojo.getRemovingModules(), "modules with k3s:rm");
+		assertDoesNotThrow(() -> runMojo.getSharedCluster().locked(() -> {
+			runMojo.getSharedCluster().reset();
+			return null;
+		}));
+
+		// other module with k3s:rm has not finished
+
+		assertDoesNotThrow(runMojo::execute);
+		assertDoesNotThrow(removeMojo::execute);
+		assertTrue(docker.getContainer().isPresent(), "container removed before other module finished");
+
+		// last module with k3s:rm removes container, aggregator is not awaited
+
+		var build = String.valueOf(request.getStartTime().getTime());
+		assertDoesNotThrow(() -> removeMojo.getSharedCluster().locked(() -> {
+			return removeMojo.getSharedCluster().finish(build, "io.kokuwa.maven:other");
+		}));
+		assertDoesNotThrow(runMojo::execute);
+		assertDoesNotThrow(removeMojo::execute);
+		assertFalse(docker.getContainer().isPresent(), "container not removed by last module with k3s:rm");
+	}
+
+	private static MavenProject project(String artifactId, boolean withRemove) {
+		var project = new MavenProject();
+		project.setGroupId("io.kokuwa.maven");
+		project.setArtifactId(artifactId);
+		if (withRemove) {
+			var execution = new PluginExecution();
+			execution.setGoals(List.of("run", "rm"));
+			var plugin = new Plugin();
+			plugin.setGroupId("io.kokuwa.maven");
+			plugin.setArtifactId("k3s-maven-plugin");
+			plugin.addExecution(execution);
+			project.getModel().setBuild(new Build());
+			project.getBuild().addPlugin(plugin);
+		}
+		return project;
+	}
 }
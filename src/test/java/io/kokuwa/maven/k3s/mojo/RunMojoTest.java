@@ -14,6 +14,7 @@ import java.nio.file.Paths;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -134,6 +135,86 @@ public class RunMojoTest extends AbstractTest {
 		assertEquals(containerBefore.getId(), containerAfter.getId(), "container shouldn't be replaced");
 	}
 
+	@DisplayName("with snapshot")
+	@Test
+	void withSnapshot(RunMojo runMojo, RemoveMojo removeMojo) {
+		var created = "INFO io.kokuwa.maven.k3s.mojo.RunMojo - Snapshot created";
+		var messages = LoggerCapturer.getMessages();
+		runMojo.setSnapshot(true);
+
+		// first start creates snapshot
+
+		assertDoesNotThrow(runMojo::execute);
+		assertTrue(messages.contains(created), "snapshot creation expected: " + messages);
+		assertTrue(assertDoesNotThrow(runMojo.getMarker()::consumeStarted), "started marker expected");
+		assertDoesNotThrow(removeMojo::execute);
+
+		// second start uses snapshot
+
+		messages.clear();
+		assertDoesNotThrow(runMojo::execute);
+		assertFalse(messages.contains(created), "snapshot creation not expected: " + messages);
+		assertTrue(messages.stream().anyMatch(m -> m.endsWith("found, start k3s from snapshot")),
+				"snapshot usage expected: " + messages);
+		assertTrue(assertDoesNotThrow(runMojo.getMarker()::consumeStarted), "started marker expected");
+	}
+
+	@DisplayName("with multiple clusters")
+	@Test
+	void withClusters(RunMojo runMojo, RemoveMojo removeMojo, MavenProject project) {
+		runMojo.setClusters(2);
+		removeMojo.setClusters(2);
+		assertDoesNotThrow(runMojo::execute);
+		var kubeconfigs = Paths.get("target/k3s-1.yaml").toAbsolutePath() + ","
+				+ Paths.get("target/k3s-2.yaml").toAbsolutePath();
+		assertEquals(kubeconfigs, project.getProperties().get("k3s.kubeconfigs"), "kubeconfigs property");
+		var kubeConfig = assertDoesNotThrow(() -> Files.readString(Paths.get("target/k3s-2.yaml")));
+		assertFalse(kubeConfig.contains("https://127.0.0.1:6443"), "kubeConfig uses port of first cluster");
+		assertTrue(runMojo.getDocker(2).getContainer().isPresent(), "second cluster not found");
+		assertDoesNotThrow(removeMojo::execute);
+		assertFalse(runMojo.getDocker(2).getContainer().isPresent(), "second cluster not removed");
+		assertFalse(docker.getContainer().isPresent(), "first cluster not removed");
+	}
+
+	@DisplayName("with multiple clusters and port bindings")
+	@Test
+	void withClustersAndPortBindings(RunMojo runMojo) {
+		runMojo.setClusters(2);
+		runMojo.setPortBindings(List.of("8080:8080"));
+		var exception = assertThrowsExactly(MojoExecutionException.class, runMojo::execute, () -> "no exception");
+		assertEquals("Port bindings [8080:8080] can not be combined with 2 clusters, every cluster would bind the"
+				+ " same host ports", exception.getMessage());
+		assertFalse(docker.getContainer().isPresent(), "container started");
+	}
+
+	@DisplayName("with registry mirror")
+	@Test
+	void withRegistryMirror(RunMojo runMojo, RemoveMojo removeMojo) throws MojoExecutionException {
+		runMojo.setRegistries(null);
+		runMojo.setDisableDefaultRegistryEndpoint(false);
+		runMojo.setRegistryMirror(true);
+		assertDoesNotThrow(runMojo::execute);
+		var registry = runMojo.getRegistryDocker(1);
+		assertTrue(registry.getContainer().map(registry::isRunning).orElse(false), "registry mirror not running");
+		assertTrue(registry.isVolumePresent(), "registry mirror volume not found");
+		docker.waitForLog(docker.getContainer().get(), Await.await(log, "registries.yaml used"),
+				l -> l.contains("Using private registry config file at /etc/rancher/k3s/registries.yaml"));
+		runMojo.setFailIfExists(false);
+		assertDoesNotThrow(runMojo::execute, "second execution with generated registries.yaml");
+		assertDoesNotThrow(removeMojo::execute);
+		assertFalse(registry.getContainer().isPresent(), "registry mirror not removed");
+		assertTrue(registry.isVolumePresent(), "registry mirror volume removed without cache");
+	}
+
+	@DisplayName("with registry mirror and custom registries.yaml")
+	@Test
+	void withRegistryMirrorAndRegistries(RunMojo runMojo) {
+		runMojo.setRegistryMirror(true);
+		runMojo.setRegistries(new File("src/test/resources/registries.yaml"));
+		var actualMessage = assertThrowsExactly(MojoExecutionException.class, runMojo::execute).getMessage();
+		assertEquals("Registry mirror can not be combined with custom registries.yaml", actualMessage);
+	}
+
 	@DisplayName("with custom registries.yaml")
 	@Test
 	void withRegistries(RunMojo runMojo) throws MojoExecutionException {
@@ -142,8 +223,8 @@ public class RunMojoTest extends AbstractTest {
 		assertDoesNotThrow(runMojo::execute);
 		assertTrue(runMojo.getMarker().consumeStarted(), "started marker expected");
 		assertTrue(Files.exists(Paths.get("target/k3s.yaml")), "k3s.yaml not found");
-		docker.waitForLog(docker.getContainer().get(), Await.await(log, "registries.yaml used"), s -> s.stream()
-				.anyMatch(l -> l.contains("Using private registry config file at /etc/rancher/k3s/registries.yaml")));
+		docker.waitForLog(docker.getContainer().get(), Await.await(log, "registries.yaml used"),
+				l -> l.contains("Using private registry config file at /etc/rancher/k3s/registries.yaml"));
 	}
 
 	@DisplayName("with custom registries.yaml (missing)")
@@ -186,6 +267,25 @@ public class RunMojoTest extends AbstractTest {
 		assertTrue(kubeConfig.contains("https://127.0.0.1:6443"), "kubeConfig invalid: " + kubeConfig);
 	}
 
+	@DisplayName("with image pull policy never and missing image")
+	@Test
+	void withImagePullPolicyNever(RunMojo runMojo) {
+		runMojo.setImageTag("v0.0.0-k3s-missing");
+		runMojo.setImagePullPolicy("never");
+		var message = assertThrowsExactly(MojoExecutionException.class, runMojo::execute).getMessage();
+		assertEquals("Image docker.io/rancher/k3s:v0.0.0-k3s-missing not found in docker and pull policy is never",
+				message, "exception message");
+		assertFalse(docker.getContainer().isPresent(), "container not expected");
+	}
+
+	@DisplayName("with image pull policy invalid")
+	@Test
+	void withImagePullPolicyInvalid(RunMojo runMojo) {
+		runMojo.setImagePullPolicy("sometimes");
+		var message = assertThrowsExactly(MojoExecutionException.class, runMojo::execute).getMessage();
+		assertEquals("Invalid pull policy 'sometimes', use one of: always, ifNotPresent, never", message);
+	}
+
 	@DisplayName("dns: skipped")
 	@Test
 	void checkDnsSkipped(RunMojo runMojo) {
@@ -57,7 +57,14 @@ public abstract class AbstractTest {
 		this.docker = newDocker;
 		this.docker.getContainer().ifPresent(docker::remove);
 		this.docker.removeVolume();
+		this.docker.removeSnapshotVolumes();
 		this.docker.removeImage(helloWorld());
+		var cluster = runMojo.getDocker(2);
+		cluster.getContainer().ifPresent(cluster::remove);
+		cluster.removeVolume();
+		for (var registry : List.of(runMojo.getRegistryDocker(1), runMojo.getRegistryDocker(2))) {
+			registry.getContainer().ifPresent(registry::remove);
+		}
 		assertDoesNotThrow(() -> Files.deleteIfExists(kubeconfig));
 		assertDoesNotThrow(() -> runMojo.getMarker().consumeStarted());
 		LoggerCapturer.clear();
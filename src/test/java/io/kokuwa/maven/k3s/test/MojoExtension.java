@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Stream;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.descriptor.MojoDescriptor;
 import org.apache.maven.plugin.descriptor.PluginDescriptorBuilder;
 import org.apache.maven.project.MavenProject;
@@ -43,6 +44,7 @@ public class MojoExtension implements ParameterResolver, BeforeAllCallback {
 				assertNotNull(inputStream, "Plugin descriptor for not found, run 'mvn plugin:descriptor'.");
 				new PluginDescriptorBuilder()
 						.build(new StringReader(new String(inputStream.readAllBytes())
+								.replaceAll("\\$\\{session.topLevelProject.build.directory}", "target")
 								.replaceAll("\\$\\{project.build.directory}", "target")
 								.replaceAll("\\$\\{project.basedir}", ".")))
 						.getMojos().forEach(mojos::add);
@@ -90,6 +92,8 @@ public class MojoExtension implements ParameterResolver, BeforeAllCallback {
 					} else if (MavenProject.class.equals(parameterType)) {
 						setter.invoke(mojo, project);
 						project.getProperties().clear();
+					} else if (MavenSession.class.equals(parameterType)) {
+						// without session the current module is handled as last module of the reactor
 					} else {
 						fail(parameter.getName() + " has unknown type: " + type);
 					}
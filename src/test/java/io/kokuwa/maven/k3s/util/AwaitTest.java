@@ -0,0 +1,55 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Test for {@link Await}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: await")
+public class AwaitTest {
+
+	final Logger log = LoggerFactory.getLogger(AwaitTest.class);
+
+	@DisplayName("until(future) completed")
+	@Test
+	void futureCompleted() throws MojoExecutionException {
+		var future = CompletableFuture.supplyAsync(() -> "done",
+				CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS));
+		assertEquals("done", Await.await(log, "future").timeout(Duration.ofSeconds(5)).until(future));
+	}
+
+	@DisplayName("until(future) with timeout")
+	@Test
+	void futureTimeout() {
+		var onTimeout = new AtomicBoolean();
+		var exception = assertThrowsExactly(MojoExecutionException.class, () -> Await.await(log, "future")
+				.timeout(Duration.ofMillis(100))
+				.onTimeout(() -> onTimeout.set(true))
+				.until(new CompletableFuture<>()));
+		assertEquals("future did not complete in 0 seconds", exception.getMessage());
+		assertTrue(onTimeout.get(), "onTimeout not called");
+	}
+
+	@DisplayName("until(future) failed")
+	@Test
+	void futureFailed() {
+		var exception = assertThrowsExactly(MojoExecutionException.class, () -> Await.await(log, "future")
+				.until(CompletableFuture.failedFuture(new IllegalStateException("nope"))));
+		assertEquals("future failed: nope", exception.getMessage());
+	}
+}
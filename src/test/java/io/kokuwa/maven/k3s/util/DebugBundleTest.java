@@ -0,0 +1,67 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link DebugBundle}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: debug bundle")
+public class DebugBundleTest {
+
+	@DisplayName("add() keeps tail of files")
+	@Test
+	void add() throws IOException {
+		var file = Path.of("target", "debug-bundle-test", "k3s-debug.tar.gz");
+		var large = "line-1\nline-2\nline-3\nline-4\n";
+		try (var bundle = new DebugBundle(file, 16)) {
+			assertEquals("small\n", new String(bundle.add("small.log", input("small\n")), StandardCharsets.UTF_8));
+			assertEquals("line-3\nline-4\n", new String(bundle.add("containers/large.log", input(large)),
+					StandardCharsets.UTF_8));
+		}
+		assertEquals(Map.of(
+				"small.log", "small\n",
+				"containers/large.log", "line-3\nline-4\n",
+				DebugBundle.INDEX, "name\tsize\tstored\nsmall.log\t6\t6\ncontainers/large.log\t28\t14\n"),
+				entries(file));
+	}
+
+	@DisplayName("tail()")
+	@Test
+	void tail() throws IOException {
+		assertEquals(List.of("c", "d"), DebugBundle.tail(input("a\nb\nc\nd\n"), 2));
+		assertEquals(List.of("a"), DebugBundle.tail(input("a"), 2));
+		assertEquals(List.of(), DebugBundle.tail(input(""), 2));
+	}
+
+	private static ByteArrayInputStream input(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, String> entries(Path file) throws IOException {
+		var entries = new LinkedHashMap<String, String>();
+		try (var tar = new TarArchiveInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+			var entry = tar.getNextEntry();
+			while (entry != null) {
+				entries.put(entry.getName(), new String(tar.readAllBytes(), StandardCharsets.UTF_8));
+				entry = tar.getNextEntry();
+			}
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,107 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.github.dockerjava.api.model.Frame;
+import com.github.dockerjava.api.model.StreamType;
+
+/**
+ * Test for {@link DockerLogCallback}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: docker log callback")
+public class DockerLogCallbackTest {
+
+	@DisplayName("messages")
+	@Test
+	void messages() {
+		var callback = new DockerLogCallback();
+		callback.onNext(frame("line 1\nline"));
+		callback.onNext(frame(" 2\n"));
+		callback.onNext(frame("  \n"));
+		callback.onNext(frame("line 3"));
+		assertFalse(callback.isCompleted(), "completed before stream was completed");
+		callback.onComplete();
+		assertTrue(callback.isCompleted(), "not completed after stream was completed");
+		assertTrue(callback.getCompletion().isDone(), "completion not done after stream was completed");
+		assertEquals(List.of("line 1", "line 2", "line 3"), callback.messages);
+	}
+
+	@DisplayName("until()")
+	@Test
+	void until() {
+		var callback = new DockerLogCallback();
+		callback.onNext(frame("starting\n"));
+		var condition = callback.until(line -> line.contains("up and running"));
+		assertFalse(condition.isDone(), "condition done before matching line");
+		callback.onNext(frame("k3s is up and running\nafter match\n"));
+		callback.onNext(frame("after match\n"));
+		assertTrue(condition.isDone(), "condition not done after matching line");
+		assertFalse(callback.isCompleted(), "completed before stream was completed");
+		assertEquals(List.of("starting", "k3s is up and running"), callback.messages, "lines after match buffered");
+	}
+
+	@DisplayName("until() without match")
+	@Test
+	void untilWithoutMatch() {
+		var callback = new DockerLogCallback();
+		var condition = callback.until(line -> line.contains("up and running"));
+		callback.onComplete();
+		assertTrue(condition.isCompletedExceptionally(), "condition should fail if stream completed");
+	}
+
+	@DisplayName("with capacity")
+	@Test
+	void capacity() {
+		var callback = new DockerLogCallback(2);
+		callback.onNext(frame("line 1\nline 2\nline 3\n"));
+		assertEquals(List.of("line 2", "line 3"), callback.messages);
+		var condition = callback.until(line -> line.equals("line 1"));
+		assertFalse(condition.isDone(), "condition done with dropped line");
+		callback.onNext(frame("line 1\n"));
+		assertTrue(condition.isDone(), "condition not done after matching line");
+	}
+
+	@DisplayName("with sink")
+	@Test
+	void sink() {
+		var output = new ByteArrayOutputStream();
+		var callback = new DockerLogCallback(output);
+		callback.onNext(frame("line 1\nline"));
+		callback.onNext(frame(" 2\n"));
+		callback.onComplete();
+		assertTrue(callback.isCompleted(), "not completed after stream was completed");
+		assertEquals("line 1\nline 2\n", output.toString());
+		assertEquals(List.of(), callback.messages);
+	}
+
+	@DisplayName("with closed sink")
+	@Test
+	void sinkClosed() throws IOException {
+		var closed = new AtomicBoolean();
+		var pipeOutput = new PipedOutputStream();
+		new PipedInputStream(pipeOutput).close();
+		var callback = new DockerLogCallback(pipeOutput);
+		callback.onStart(() -> closed.set(true));
+		callback.onNext(frame("line 1\n"));
+		assertTrue(callback.getCompletion().isCompletedExceptionally(), "not failed after write error");
+		assertTrue(closed.get(), "stream not closed after write error");
+	}
+
+	static Frame frame(String text) {
+		return new Frame(StreamType.STDOUT, text.getBytes());
+	}
+}
@@ -0,0 +1,56 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.dockerjava.api.model.PullResponseItem;
+
+/**
+ * Test for {@link DockerPullCallback}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: docker pull callback")
+public class DockerPullCallbackTest {
+
+	@DisplayName("progress of layers")
+	@Test
+	void progress() throws JsonProcessingException {
+		var updates = new AtomicInteger();
+		var callback = new DockerPullCallback(Image.of("postgres:16"), updates::incrementAndGet);
+		callback.onNext(item("{\"status\":\"Pulling from library/postgres\",\"id\":\"16\"}"));
+		callback.onNext(item("{\"status\":\"Already exists\",\"id\":\"a\"}"));
+		callback.onNext(item("{\"status\":\"Pulling fs layer\",\"id\":\"b\"}"));
+		callback.onNext(item("{\"status\":\"Pulling fs layer\",\"id\":\"c\"}"));
+		callback.onNext(
+				item("{\"status\":\"Downloading\",\"id\":\"b\",\"progressDetail\":{\"current\":10,\"total\":100}}"));
+		callback.onNext(
+				item("{\"status\":\"Downloading\",\"id\":\"c\",\"progressDetail\":{\"current\":5,\"total\":50}}"));
+		callback.onNext(
+				item("{\"status\":\"Downloading\",\"id\":\"b\",\"progressDetail\":{\"current\":60,\"total\":100}}"));
+		assertEquals(65, callback.getDownloaded());
+		assertEquals(150, callback.getTotal());
+
+		callback.onNext(item("{\"status\":\"Download complete\",\"id\":\"b\"}"));
+		callback.onNext(item("{\"status\":\"Download complete\",\"id\":\"c\"}"));
+		callback.onNext(item("{\"status\":\"Pull complete\",\"id\":\"b\"}"));
+		callback.onNext(item("{\"status\":\"Status: Downloaded newer image for postgres:16\"}"));
+		callback.onComplete();
+		assertTrue(callback.isSuccess(), "success");
+		assertEquals(150, callback.getDownloaded());
+		assertEquals(2, callback.getLayers());
+		assertEquals(1, callback.getReusedLayers());
+		assertEquals(5, updates.get());
+	}
+
+	private static PullResponseItem item(String json) throws JsonProcessingException {
+		return new ObjectMapper().readValue(json, PullResponseItem.class);
+	}
+}
@@ -0,0 +1,81 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test for {@link Events}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: events")
+public class EventsTest {
+
+	final Logger log = LoggerFactory.getLogger(EventsTest.class);
+
+	@DisplayName("await with polls and sleep time")
+	@Test
+	void await() throws IOException, MojoExecutionException {
+		var file = Path.of("target", "events-test", "await.jfr");
+		Files.createDirectories(file.getParent());
+		try (var recording = new Recording()) {
+			recording.enable("io.kokuwa.maven.k3s.Await").withThreshold(Duration.ZERO);
+			recording.start();
+			var polls = new AtomicInteger();
+			Await.await(log, "events-success").interval(Duration.ofMillis(10)).until(() -> polls.incrementAndGet() > 2);
+			assertThrowsExactly(MojoExecutionException.class, () -> Await.await(log, "events-timeout")
+					.interval(Duration.ofMillis(10)).timeout(Duration.ofMillis(50)).until(() -> false));
+			recording.stop();
+			recording.dump(file);
+		}
+
+		var events = RecordingFile.readAllEvents(file).stream()
+				.filter(event -> event.getString("text").startsWith("events-"))
+				.toList();
+		assertEquals(2, events.size());
+		var success = events.get(0);
+		assertEquals("events-success", success.getString("text"));
+		assertEquals(3, success.getInt("polls"));
+		assertEquals(20, sleep(success));
+		assertTrue(success.getBoolean("success"));
+		var timeout = events.get(1);
+		assertEquals("events-timeout", timeout.getString("text"));
+		assertEquals(timeout.getInt("polls") * 10L, sleep(timeout));
+		assertFalse(timeout.getBoolean("success"));
+	}
+
+	@DisplayName("counting input stream")
+	@Test
+	void countingInputStream() throws IOException {
+		try (var input = new Events.CountingInputStream(new ByteArrayInputStream(new byte[100]))) {
+			input.read();
+			input.read(new byte[10]);
+			input.skip(9);
+			input.readAllBytes();
+			assertEquals(100, input.getCount());
+		}
+	}
+
+	private static long sleep(RecordedEvent event) {
+		return event.getDuration("sleep").toMillis();
+	}
+}
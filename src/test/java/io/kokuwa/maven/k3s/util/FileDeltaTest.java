@@ -0,0 +1,86 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link FileDelta}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: file delta")
+public class FileDeltaTest {
+
+	@DisplayName("of() with directory")
+	@Test
+	void directory() throws IOException {
+		var directory = Path.of("target", "file-delta-test");
+		FileUtils.deleteDirectory(directory.toFile());
+		Files.createDirectories(directory.resolve("sub"));
+		Files.createDirectories(directory.resolve("empty"));
+		Files.writeString(directory.resolve("a.yaml"), "a");
+		Files.writeString(directory.resolve("b.yaml"), "b");
+		Files.writeString(directory.resolve("sub/c.yaml"), "c");
+
+		// initial copy contains all files and directories
+
+		var delta = FileDelta.of(directory, Map.of());
+		assertEquals(List.of("a.yaml", "b.yaml", "empty", "sub", "sub/c.yaml"), delta.changed());
+		assertEquals(List.of(), delta.deleted());
+		assertEquals(List.of("a.yaml:a", "b.yaml:b", "empty/:", "sub/:", "sub/c.yaml:c"), entries(delta));
+
+		// unchanged
+
+		assertTrue(FileDelta.of(directory, delta.fingerprints()).isEmpty(), "unchanged files");
+
+		// touched without changes, changed and deleted
+
+		Files.setLastModifiedTime(directory.resolve("a.yaml"), FileTime.from(Instant.now().plusSeconds(10)));
+		Files.writeString(directory.resolve("b.yaml"), "changed");
+		Files.delete(directory.resolve("sub/c.yaml"));
+		Files.delete(directory.resolve("empty"));
+		var next = FileDelta.of(directory, delta.fingerprints());
+		assertEquals(List.of("b.yaml"), next.changed());
+		assertEquals(List.of("empty", "sub/c.yaml"), next.deleted());
+		assertEquals(List.of("b.yaml:changed"), entries(next));
+		assertTrue(FileDelta.of(directory, next.fingerprints()).isEmpty(), "touched file not updated");
+	}
+
+	@DisplayName("of() with file")
+	@Test
+	void file() throws IOException {
+		var delta = FileDelta.of(Path.of("pom.xml"), Map.of());
+		assertEquals(List.of("pom.xml"), delta.changed());
+	}
+
+	private static List<String> entries(FileDelta delta) throws IOException {
+		var output = new ByteArrayOutputStream();
+		delta.writeTar(output, "");
+		var entries = new ArrayList<String>();
+		try (var tar = new TarArchiveInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+			var entry = tar.getNextEntry();
+			while (entry != null) {
+				entries.add(entry.getName() + ":" + new String(tar.readAllBytes(), StandardCharsets.UTF_8));
+				entry = tar.getNextEntry();
+			}
+		}
+		return entries;
+	}
+}
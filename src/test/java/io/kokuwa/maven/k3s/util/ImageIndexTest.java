@@ -0,0 +1,103 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link ImageIndex}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: image index")
+public class ImageIndexTest {
+
+	private final Path directory = Path.of("target", "image-index-test");
+	private final Path file = directory.resolve("images.properties");
+
+	@DisplayName("docker images")
+	@Test
+	void docker() throws MojoExecutionException, IOException {
+		Files.deleteIfExists(file);
+		var image = Image.of("hello-world:linux");
+		var found = Image
+				.of("hello-world:linux@sha256:b44f8077f3cc983f21adf071c813599ff805af75196a456a326253c7b3357c48");
+
+		// persisted until docker reports changes
+
+		var index = new ImageIndex(file);
+		assertEquals(Optional.empty(), index.getDockerTimestamp());
+		index.validateDocker(1000, false);
+		index.putDockerImage(image, Optional.of(found));
+		index.write();
+		index = new ImageIndex(file);
+		assertEquals(Optional.of(1000L), index.getDockerTimestamp());
+		assertEquals(Optional.of(found), index.getDockerImage(image));
+		index.validateDocker(2000, true);
+		assertEquals(Optional.of(found), index.getDockerImage(image));
+
+		// dropped on docker changes
+
+		index.validateDocker(3000, false);
+		assertEquals(Optional.of(3000L), index.getDockerTimestamp());
+		assertEquals(Optional.empty(), index.getDockerImage(image));
+	}
+
+	@DisplayName("ctr images")
+	@Test
+	void ctr() throws MojoExecutionException, IOException {
+		Files.deleteIfExists(file);
+		var rows = List.of("REF TYPE DIGEST SIZE PLATFORMS LABELS", "docker.io/library/hello-world:linux a b c d e");
+
+		// persisted until container changes
+
+		var index = new ImageIndex(file);
+		assertEquals(Optional.empty(), index.getCtrImages("k3s", "id@1"));
+		index.putCtrImages("k3s", "id@1", rows);
+		index.putCtrImages("k3s-2", "id2@1", List.of());
+		index.write();
+		index = new ImageIndex(file);
+		assertEquals(Optional.of(rows), index.getCtrImages("k3s", "id@1"));
+		assertEquals(Optional.of(List.of()), index.getCtrImages("k3s-2", "id2@1"));
+		assertEquals(Optional.empty(), index.getCtrImages("k3s", "id@2"), "restarted container");
+
+		// removed on changes in ctr
+
+		index.removeCtrImages("k3s");
+		assertEquals(Optional.empty(), index.getCtrImages("k3s", "id@1"));
+	}
+
+	@DisplayName("write() merges concurrent changes")
+	@Test
+	void merge() throws MojoExecutionException, IOException {
+		Files.deleteIfExists(file);
+		var a = Image.of("a:1");
+		var b = Image.of("b:1");
+		var c = Image.of("c:1");
+		var initial = new ImageIndex(file);
+		initial.putDockerImage(c, Optional.of(c));
+		initial.write();
+
+		var first = new ImageIndex(file);
+		var second = new ImageIndex(file);
+		first.putDockerImage(a, Optional.of(a));
+		second.putDockerImage(b, Optional.of(b));
+		second.putDockerImage(c, Optional.empty());
+		first.write();
+		second.write();
+
+		var index = new ImageIndex(file);
+		assertEquals(Optional.of(a), index.getDockerImage(a), "change of first index lost");
+		assertEquals(Optional.of(b), index.getDockerImage(b), "change of second index lost");
+		assertEquals(Optional.empty(), index.getDockerImage(c), "removal of second index lost");
+		assertEquals(Optional.of(a), second.getDockerImage(a), "written index not refreshed");
+	}
+}
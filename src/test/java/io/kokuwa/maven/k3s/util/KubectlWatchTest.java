@@ -0,0 +1,89 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link KubectlWatch}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: kubectl watch")
+public class KubectlWatchTest {
+
+	@DisplayName("isReady(deployment)")
+	@Test
+	void deployment() {
+		assertReady("deployment", Optional.empty(), "default echo 1 <none> 1 <none> <none> <none> <none>");
+		assertReady("deployment", Optional.empty(), "default echo 2 1 1 1 1 1 NewReplicaSetAvailable");
+		assertReady("deployment", Optional.empty(), "default echo 2 2 1 2 1 1 ReplicaSetUpdated");
+		assertReady("deployment", Optional.empty(), "default echo 2 2 1 1 1 0 ReplicaSetUpdated");
+		assertReady("deployment", Optional.of(true), "default echo 2 2 1 1 1 1 NewReplicaSetAvailable");
+		assertReady("deployment", Optional.of(true), "default echo 1 1 0 <none> <none> <none> <none>");
+		assertReady("deployment", Optional.empty(), "default echo 2 1 1 1 1 0 ProgressDeadlineExceeded");
+		assertReady("deployment", Optional.of(false), "default echo 2 2 1 1 1 0 ProgressDeadlineExceeded");
+	}
+
+	@DisplayName("isReady(statefulset)")
+	@Test
+	void statefulset() {
+		assertReady("statefulset", Optional.empty(), "default db 1 1 RollingUpdate 1 1 <none> db-1 db-1");
+		assertReady("statefulset", Optional.empty(), "default db 2 2 RollingUpdate 1 1 1 db-1 db-2");
+		assertReady("statefulset", Optional.of(true), "default db 2 2 RollingUpdate 1 1 1 db-2 db-2");
+		assertReady("statefulset", Optional.empty(), "default db 1 1 OnDelete 2 2 1 db-1 db-1");
+		assertReady("statefulset", Optional.of(true), "default db 1 1 OnDelete 2 2 2 db-1 db-2");
+	}
+
+	@DisplayName("isReady(job)")
+	@Test
+	void job() {
+		assertReady("job", Optional.empty(), "default migrate <none> <none>");
+		assertReady("job", Optional.of(true), "default migrate True <none>");
+		assertReady("job", Optional.of(false), "default migrate <none> True");
+	}
+
+	@DisplayName("isReady(pod)")
+	@Test
+	void pod() {
+		assertReady("pod", Optional.empty(), "default echo <none>");
+		assertReady("pod", Optional.empty(), "default echo False");
+		assertReady("pod", Optional.of(true), "default echo True");
+	}
+
+	@DisplayName("onLine()")
+	@Test
+	void onLine() {
+		var watch = new KubectlWatch("pod", Duration.ofSeconds(10));
+		var echo = watch.waitFor("default", "echo");
+		var other = watch.waitFor("test", "echo");
+		watch.onLine("default echo False");
+		watch.onLine("default unknown True");
+		assertEquals(false, echo.isDone(), "echo should wait");
+		watch.onLine("default echo True");
+		assertEquals(true, echo.join(), "echo should be ready");
+		assertEquals(false, other.isDone(), "other should wait");
+		watch.onComplete();
+		assertEquals(false, other.join(), "other should fail after watch completed");
+	}
+
+	@DisplayName("onLine() with incomplete line")
+	@Test
+	void onLineIncomplete() {
+		var watch = new KubectlWatch("deployment", Duration.ofSeconds(10));
+		var echo = watch.waitFor("default", "echo");
+		watch.onLine("error:");
+		watch.onLine("default echo 2 2 1 1 1");
+		assertEquals(false, echo.isDone(), "echo should wait");
+		watch.onLine("default echo 2 2 1 1 1 1 NewReplicaSetAvailable");
+		assertEquals(true, echo.join(), "echo should be ready");
+	}
+
+	private static void assertReady(String kind, Optional<Boolean> expected, String line) {
+		assertEquals(expected, KubectlWatch.isReady(kind, line.split("\\s+")), () -> kind + ": " + line);
+	}
+}
@@ -0,0 +1,133 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Manifest} and {@link ContainerIndex}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: manifest")
+public class ManifestTest {
+
+	@DisplayName("parse() with multi document yaml")
+	@Test
+	void parseYaml() throws MojoExecutionException {
+		var manifests = Manifest.parse("""
+				# comment only
+				---
+				apiVersion: v1
+				kind: Namespace
+				metadata:
+				  name: example
+				---
+				apiVersion: apps/v1
+				kind: Deployment
+				metadata:
+				  labels:
+				    name: nested
+				  name: "echo"
+				  namespace: example # comment
+				spec:
+				  template:
+				    metadata:
+				      name: template
+				--- # separator with comment
+				apiVersion: v1
+				kind: ConfigMap
+				metadata:
+				  name: config
+				data:
+				  name: value
+				""", null);
+		assertEquals(List.of("v1/Namespace//example", "apps/v1/Deployment/example/echo", "v1/ConfigMap//config"),
+				manifests.stream().map(Manifest::id).toList());
+		assertTrue(manifests.get(0).isNamespace(), "namespace");
+		assertTrue(manifests.get(1).content().startsWith("apiVersion: apps/v1\n"), "content");
+	}
+
+	@DisplayName("parse() with separator only at start of line")
+	@Test
+	void parseYamlSeparator() throws MojoExecutionException {
+		var manifests = Manifest.parse("""
+				apiVersion: v1
+				kind: ConfigMap
+				metadata:
+				  name: config
+				data:
+				  script: |
+				    ---
+				---
+				----not-a-separator: value
+				apiVersion: v1
+				kind: ConfigMap
+				metadata:
+				  name: other
+				""", null);
+		assertEquals(List.of("v1/ConfigMap//config", "v1/ConfigMap//other"),
+				manifests.stream().map(Manifest::id).toList());
+		assertTrue(manifests.get(1).content().startsWith("----not-a-separator: value\n"), "content");
+	}
+
+	@DisplayName("parse() with json list")
+	@Test
+	void parseJson() throws MojoExecutionException {
+		var manifests = Manifest.parse("""
+				{"apiVersion":"v1","kind":"List","items":[
+					{"apiVersion":"apiextensions.k8s.io/v1","kind":"CustomResourceDefinition","metadata":{"name":"a"}},
+					{"apiVersion":"v1","kind":"Pod","metadata":{"name":"b","namespace":"c"}}
+				]}
+				""", "default");
+		assertEquals(List.of("apiextensions.k8s.io/v1/CustomResourceDefinition/default/a", "v1/Pod/c/b"),
+				manifests.stream().map(Manifest::id).toList());
+		assertTrue(manifests.get(0).isCustomResourceDefinition(), "crd");
+	}
+
+	@DisplayName("read() with test manifests")
+	@Test
+	void read() throws MojoExecutionException {
+		var manifests = Manifest.read(Path.of("src/test/k3s/deployment"), null);
+		assertTrue(manifests.stream().anyMatch(m -> "Deployment".equals(m.kind())), "deployment not found");
+	}
+
+	@DisplayName("digest() depends on content and namespace")
+	@Test
+	void digest() throws MojoExecutionException {
+		var manifest = Manifest.parse("kind: Pod\nmetadata:\n  name: a\n", null).get(0);
+		var changed = Manifest.parse("kind: Pod\nmetadata:\n  name: a\n  labels: {}\n", null).get(0);
+		assertEquals(manifest.digest(null), manifest.digest(null));
+		assertNotEquals(manifest.digest(null), manifest.digest("example"));
+		assertNotEquals(manifest.digest(null), changed.digest(null));
+	}
+
+	@DisplayName("apply index")
+	@Test
+	void applyIndex() throws MojoExecutionException {
+		var marker = new Marker(Path.of("target", "apply-index-test").toFile());
+		var digests = Map.of("v1/Pod/default/a", "sha256:a", "v1/Pod/default/b", "sha256:b");
+
+		var index = marker.readApplyIndex();
+		index.put("k3s", "id@1", digests);
+		index.write();
+		index = marker.readApplyIndex();
+		assertEquals(digests, index.get("k3s", "id@1"));
+		assertEquals(Map.of(), index.get("k3s", "id@2"), "restarted container");
+		assertEquals(Map.of(), index.get("k3s-2", "id@1"), "other container");
+
+		index.merge("k3s", "id@1", Map.of("v1/Pod/default/b", "sha256:b2", "v1/Pod/default/c", "sha256:c"));
+		assertEquals(Map.of("v1/Pod/default/a", "sha256:a", "v1/Pod/default/b", "sha256:b2",
+				"v1/Pod/default/c", "sha256:c"), index.get("k3s", "id@1"), "merged");
+		index.merge("k3s", "id@2", Map.of("v1/Pod/default/c", "sha256:c"));
+		assertEquals(Map.of("v1/Pod/default/c", "sha256:c"), index.get("k3s", "id@2"), "merged after restart");
+	}
+}
@@ -0,0 +1,54 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Marker}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: marker")
+public class MarkerTest {
+
+	@DisplayName("checksum()")
+	@Test
+	void checksum() throws MojoExecutionException, IOException {
+		var directory = Path.of("target", "marker-test");
+		var marker = new Marker(directory.toFile());
+		Files.deleteIfExists(directory.resolve("checksums.properties"));
+
+		// checksum is equal to checksum calculated in memory
+
+		var tarFile = Path.of("src/test/resources/hello-world.tar");
+		assertEquals("adler32:648119894", marker.checksum(tarFile));
+		assertTrue(Files.isRegularFile(directory.resolve("checksums.properties")), "checksum not cached");
+
+		// checksum is taken from cache if size and modified time did not change
+
+		var file = directory.resolve("file.txt");
+		var modified = FileTime.from(Instant.now());
+		Files.writeString(file, "abc");
+		Files.setLastModifiedTime(file, modified);
+		var checksum = marker.checksum(file);
+		Files.writeString(file, "xyz");
+		Files.setLastModifiedTime(file, modified);
+		assertEquals(checksum, marker.checksum(file), "checksum should be cached");
+
+		// checksum is recalculated if file changed
+
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+		assertNotEquals(checksum, marker.checksum(file), "checksum should be recalculated");
+	}
+}
@@ -0,0 +1,124 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link PullManager}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: pull manager")
+public class PullManagerTest {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+	@DisplayName("pull() with limit of concurrent pulls per registry")
+	@Test
+	void pullLimit() throws Exception {
+		var active = new AtomicInteger();
+		var maxActive = new AtomicInteger();
+		var count = new AtomicInteger();
+		var manager = new PullManager((callback, timeout) -> {
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			count.incrementAndGet();
+			sleep(50);
+			active.decrementAndGet();
+		}, 2);
+
+		var executor = Executors.newFixedThreadPool(6);
+		try {
+			var futures = new ArrayList<Future<Void>>();
+			for (var i = 0; i < 6; i++) {
+				var image = Image.of("docker.io/library/image-" + i + ":1");
+				futures.add(pull(executor, manager, image));
+			}
+			for (var future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			shutdown(executor);
+		}
+		assertEquals(6, count.get(), "pulls");
+		assertTrue(maxActive.get() <= 2, "concurrent pulls exceed limit: " + maxActive.get());
+		assertEquals(1, manager.summary().size(), "registries in summary");
+	}
+
+	@DisplayName("pull() with duplicate requests")
+	@Test
+	void pullDuplicate() throws Exception {
+		var count = new AtomicInteger();
+		var started = new CountDownLatch(1);
+		var release = new CountDownLatch(1);
+		var manager = new PullManager((callback, timeout) -> {
+			count.incrementAndGet();
+			started.countDown();
+			await(release);
+		}, 4);
+		var image = Image.of("docker.io/library/image:1");
+
+		var executor = Executors.newFixedThreadPool(3);
+		try {
+			var first = pull(executor, manager, image);
+			await(started);
+			var second = pull(executor, manager, image);
+			var third = pull(executor, manager, image);
+			release.countDown();
+			first.get(10, TimeUnit.SECONDS);
+			second.get(10, TimeUnit.SECONDS);
+			third.get(10, TimeUnit.SECONDS);
+		} finally {
+			shutdown(executor);
+		}
+		assertEquals(1, count.get(), "pulls");
+	}
+
+	@DisplayName("bytes()")
+	@Test
+	void bytes() {
+		assertEquals("512 B", PullManager.bytes(512));
+		assertEquals("1.5 KiB", PullManager.bytes(1536));
+		assertEquals("100.0 MiB", PullManager.bytes(100 * 1024 * 1024));
+		assertEquals("2.0 GiB", PullManager.bytes(2L * 1024 * 1024 * 1024));
+	}
+
+	private static Future<Void> pull(ExecutorService executor, PullManager manager, Image image) {
+		return executor.submit(() -> {
+			manager.pull(image, TIMEOUT);
+			return null;
+		});
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			assertTrue(latch.await(10, TimeUnit.SECONDS), "latch not released");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void shutdown(ExecutorService executor) throws InterruptedException {
+		executor.shutdownNow();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "executor not terminated");
+	}
+}
@@ -0,0 +1,84 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link Scheduler}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: scheduler")
+public class SchedulerTest {
+
+	@DisplayName("invokeAllIo() and invokeAllWait() respect limits")
+	@Test
+	void limits() throws Exception {
+		try (var scheduler = new Scheduler(2, 3)) {
+			assertEquals(2, maxConcurrency(tasks -> scheduler.invokeAllIo(tasks)), "io limit");
+			assertEquals(3, maxConcurrency(tasks -> scheduler.invokeAllWait(tasks)), "wait limit");
+		}
+	}
+
+	@DisplayName("close() stops threads")
+	@Test
+	void close() throws Exception {
+		var thread = new Thread[1];
+		try (var scheduler = new Scheduler(1, 1)) {
+			Callable<Void> task = () -> {
+				thread[0] = Thread.currentThread();
+				return null;
+			};
+			scheduler.invokeAllIo(List.of(task)).get(0).get();
+			assertTrue(thread[0].isDaemon(), "daemon thread expected");
+			assertTrue(thread[0].getName().startsWith("k3s-io-"), "thread name: " + thread[0].getName());
+		}
+		thread[0].join(1000);
+		assertFalse(thread[0].isAlive(), "thread still alive after close");
+	}
+
+	@DisplayName("invokeAllWait() uses virtual threads if supported")
+	@Test
+	void virtualThreads() throws Exception {
+		var thread = new Thread[1];
+		try (var scheduler = new Scheduler(1, 1)) {
+			Callable<Void> task = () -> {
+				thread[0] = Thread.currentThread();
+				return null;
+			};
+			scheduler.invokeAllWait(List.of(task)).get(0).get();
+		}
+		assertEquals("k3s-wait-1", thread[0].getName(), "thread name");
+		assertEquals(Runtime.version().feature() >= 21, Scheduler.virtualThreadFactory("test-").isPresent(),
+				"virtual threads supported");
+	}
+
+	private static int maxConcurrency(Invoker invoker) throws Exception {
+		var active = new AtomicInteger();
+		var max = new AtomicInteger();
+		var tasks = new ArrayList<Callable<Integer>>();
+		for (var i = 0; i < 10; i++) {
+			tasks.add(() -> {
+				max.accumulateAndGet(active.incrementAndGet(), Math::max);
+				Thread.sleep(20);
+				return active.decrementAndGet();
+			});
+		}
+		invoker.invoke(tasks);
+		return max.get();
+	}
+
+	@FunctionalInterface
+	private interface Invoker {
+		void invoke(ArrayList<Callable<Integer>> tasks) throws Exception;
+	}
+}
@@ -0,0 +1,79 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for {@link SharedCluster}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: shared cluster")
+public class SharedClusterTest {
+
+	private final SharedCluster cluster = new SharedCluster(new File("target/shared-cluster-test"));
+
+	@DisplayName("attach() and detach()")
+	@Test
+	void attachAndDetach() throws MojoExecutionException {
+		cluster.reset();
+		assertEquals(0, cluster.attach("a"));
+		assertEquals(1, cluster.attach("b"));
+		assertEquals(1, cluster.attach("b"), "attach is idempotent");
+		assertEquals(1, cluster.detach("a"));
+		assertEquals(1, cluster.detach("a"), "detach is idempotent");
+		assertEquals(0, cluster.detach("b"));
+	}
+
+	@DisplayName("finish()")
+	@Test
+	void finish() throws MojoExecutionException {
+		var build1 = "build-" + System.nanoTime();
+		var build2 = "build-" + System.nanoTime();
+		assertEquals(Set.of("a"), cluster.finish(build1, "a"));
+		assertEquals(Set.of("a", "b"), cluster.finish(build1, "b"));
+		assertEquals(Set.of("a", "b"), cluster.finish(build1, "b"), "finish is idempotent");
+		cluster.reset();
+		assertEquals(Set.of("a", "b", "c"), cluster.finish(build1, "c"), "finished modules dropped by reset");
+		assertEquals(Set.of("a"), cluster.finish(build2, "a"), "finished modules of other build used");
+	}
+
+	@DisplayName("locked()")
+	@Test
+	void locked() throws Exception {
+		cluster.reset();
+		var active = new AtomicInteger();
+		var maxActive = new AtomicInteger();
+		var tasks = new ArrayList<Callable<Integer>>();
+		for (var i = 0; i < 8; i++) {
+			var module = "module-" + i;
+			tasks.add(() -> cluster.locked(() -> {
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				Thread.sleep(10);
+				active.decrementAndGet();
+				return cluster.attach(module);
+			}));
+		}
+		var executor = Executors.newFixedThreadPool(4);
+		try {
+			var others = new ArrayList<Integer>();
+			for (var future : executor.invokeAll(tasks)) {
+				others.add(future.get());
+			}
+			assertEquals(1, maxActive.get(), "lock not exclusive");
+			assertEquals(28, others.stream().mapToInt(Integer::intValue).sum(), "attach lost updates: " + others);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test for {@link TarFilter}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: tar filter")
+public class TarFilterTest {
+
+	@DisplayName("skipBlobs()")
+	@Test
+	void skipBlobs() throws IOException {
+		var input = tar(Map.of(
+				"blobs/sha256/aaa", "layer-a",
+				"blobs/sha256/bbb", "layer-b",
+				"index.json", "{}",
+				"ccc/layer.tar", "legacy"));
+		var output = new ByteArrayOutputStream();
+		var skipped = TarFilter.skipBlobs(new ByteArrayInputStream(input), output, Set.of("sha256:aaa", "sha256:ccc"));
+		assertEquals(7, skipped, "skipped bytes");
+		assertEquals(List.of("blobs/sha256/bbb:layer-b", "ccc/layer.tar:legacy", "index.json:{}"), entries(output));
+	}
+
+	@DisplayName("skipBlobs() without digests")
+	@Test
+	void skipBlobsWithoutDigests() throws IOException {
+		var input = tar(Map.of("blobs/sha256/aaa", "layer-a", "index.json", "{}"));
+		var output = new ByteArrayOutputStream();
+		assertEquals(0, TarFilter.skipBlobs(new ByteArrayInputStream(input), output, Set.of()), "skipped bytes");
+		assertEquals(List.of("blobs/sha256/aaa:layer-a", "index.json:{}"), entries(output));
+	}
+
+	@DisplayName("skipBlobs() with prefix")
+	@Test
+	void skipBlobsWithPrefix() throws IOException {
+		var input = tar(Map.of("blobs/sha256/aaa", "layer-a", "blobs/sha256/bbb", "layer-b", "index.json", "{}"));
+		var output = new ByteArrayOutputStream();
+		var prefix = TarFilter.prefix("/tmp/123");
+		var skipped = TarFilter.skipBlobs(new ByteArrayInputStream(input), output, prefix, Set.of("sha256:aaa"));
+		assertEquals(7, skipped, "skipped bytes");
+		assertEquals(List.of("tmp/123/blobs/sha256/bbb:layer-b", "tmp/123/index.json:{}"), entries(output));
+	}
+
+	@DisplayName("prefix()")
+	@Test
+	void prefix() {
+		assertEquals("tmp/123/", TarFilter.prefix("/tmp/123"), "absolute");
+		assertEquals("tmp/123/", TarFilter.prefix("/tmp/123/"), "trailing slash");
+		assertEquals("", TarFilter.prefix("/"), "root");
+	}
+
+	@DisplayName("writeFiles()")
+	@Test
+	void writeFiles(@TempDir Path directory) throws IOException {
+		Files.createDirectories(directory.resolve("sub"));
+		Files.writeString(directory.resolve("sub/b.yaml"), "b");
+		Files.createDirectories(directory.resolve("source/empty"));
+		Files.createSymbolicLink(directory.resolve("source/link"), directory.resolve("sub"));
+		Files.writeString(directory.resolve("source/a.yaml"), "a");
+		var output = new ByteArrayOutputStream();
+		TarFilter.writeFiles(directory.resolve("source"), output, TarFilter.prefix("/k3s/manifests"));
+		assertEquals(List.of("k3s/manifests/:", "k3s/manifests/a.yaml:a", "k3s/manifests/empty/:",
+				"k3s/manifests/link/:", "k3s/manifests/link/b.yaml:b"), entries(output), "directory");
+		output = new ByteArrayOutputStream();
+		TarFilter.writeFiles(directory.resolve("source/a.yaml"), output, TarFilter.prefix("/k3s/manifests"));
+		assertEquals(List.of("k3s/manifests/:", "k3s/manifests/a.yaml:a"), entries(output), "file");
+	}
+
+	private static byte[] tar(Map<String, String> files) throws IOException {
+		var output = new ByteArrayOutputStream();
+		try (var tar = new TarArchiveOutputStream(output)) {
+			for (var name : files.keySet().stream().sorted().toList()) {
+				var content = files.get(name).getBytes(StandardCharsets.UTF_8);
+				var entry = new TarArchiveEntry(name);
+				entry.setSize(content.length);
+				tar.putArchiveEntry(entry);
+				tar.write(content);
+				tar.closeArchiveEntry();
+			}
+		}
+		return output.toByteArray();
+	}
+
+	private static List<String> entries(ByteArrayOutputStream output) throws IOException {
+		var entries = new ArrayList<String>();
+		try (var tar = new TarArchiveInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+			var entry = tar.getNextEntry();
+			while (entry != null) {
+				entries.add(entry.getName() + ":" + new String(tar.readAllBytes(), StandardCharsets.UTF_8));
+				entry = tar.getNextEntry();
+			}
+		}
+		return entries;
+	}
+}
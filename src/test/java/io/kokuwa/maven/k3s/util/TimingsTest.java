@@ -0,0 +1,65 @@
+package io.kokuwa.maven.k3s.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test for {@link Timings}.
+ *
+ * @author stephan@schnabel.org
+ */
+@DisplayName("util: timings")
+public class TimingsTest {
+
+	@DisplayName("time() records success and failure")
+	@Test
+	void time() throws MojoExecutionException {
+		var timings = new Timings("test");
+		assertEquals("result", timings.time(Timings.EXEC, "sh -c\necho result", () -> "result"));
+		assertThrows(MojoExecutionException.class, () -> timings.time(Timings.IMAGE, "postgres:16", () -> {
+			throw new MojoExecutionException("failed");
+		}));
+		assertEquals(List.of("exec:sh -c:true", "image:postgres:16:false"), timings.getSpans().stream()
+				.map(span -> span.category() + ":" + span.name() + ":" + span.success())
+				.toList());
+		assertEquals(3, timings.summary().size(), "summary has header and one line per category");
+	}
+
+	@DisplayName("write() merges spans of same build")
+	@Test
+	void write() throws IOException, MojoExecutionException {
+		var file = Path.of("target", "timings-test", "timings.json");
+		Files.deleteIfExists(file);
+
+		var run = new Timings("run");
+		run.start(Timings.WAIT, "k3s api available").stop(true);
+		run.write(file, "2");
+		var apply = new Timings("apply");
+		apply.start(Timings.WAIT, "deployment default/echo").stop(false);
+		apply.write(file, "2");
+
+		var spans = new ObjectMapper().readTree(file.toFile()).path("spans");
+		assertEquals(2, spans.size());
+		assertEquals("run", spans.get(0).path("mojo").asText());
+		assertEquals("apply", spans.get(1).path("mojo").asText());
+		assertEquals("deployment default/echo", spans.get(1).path("name").asText());
+		assertEquals(false, spans.get(1).path("success").asBoolean());
+
+		// report of previous build is replaced
+
+		Files.writeString(file, "{\"build\":\"1\",\"spans\":[{\"mojo\":\"old\"}]}");
+		run.write(file, "3");
+		assertEquals(1, new ObjectMapper().readTree(file.toFile()).path("spans").size());
+	}
+}